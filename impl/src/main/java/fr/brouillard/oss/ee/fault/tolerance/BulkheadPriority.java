@@ -0,0 +1,74 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Gives a priority to the asynchronous bulkhead guarded calls made by the current thread.
+ * 
+ * The priority is only used by bulkheads queueing executions by priority; the higher the value, the sooner
+ * a waiting execution is dispatched. Interceptors can also provide it through the invocation context data,
+ * under {@link #CONTEXT_KEY}.
+ */
+public final class BulkheadPriority {
+    /**
+     * Invocation context data key holding an {@link Integer} priority.
+     */
+    public static final String CONTEXT_KEY = "fr.brouillard.oss.ee.fault.tolerance.priority";
+    /**
+     * Invocation context data key holding a {@link Long} deadline, based on {@link System#nanoTime()}, used by
+     * bulkheads queueing executions by deadline.
+     */
+    public static final String DEADLINE_CONTEXT_KEY = "fr.brouillard.oss.ee.fault.tolerance.deadline";
+
+    public static final int DEFAULT_PRIORITY = 0;
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private BulkheadPriority() {
+    }
+
+    /**
+     * Executes the given action, asynchronous bulkhead guarded calls it makes get the given priority.
+     * @param priority the priority to use
+     * @param action the action to execute
+     * @param <T> the type of the result of the action
+     * @return the result of the action
+     * @throws Exception the exception thrown by the action
+     */
+    public static <T> T call(int priority, Callable<T> action) throws Exception {
+        Integer previous = CURRENT.get();
+        CURRENT.set(priority);
+        try {
+            return action.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the priority given to the calls made by the current thread
+     */
+    public static int current() {
+        Integer priority = CURRENT.get();
+        return (priority != null) ? priority : DEFAULT_PRIORITY;
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Hedges the calls of a read only, idempotent, synchronous method: when a call has not ended after the given
+ * percentile of the observed latencies, a second attempt is executed in parallel on the managed executor. The
+ * first attempt to succeed gives the result, the other one is cancelled.
+ * 
+ * Hedged attempts go through the bulkhead and circuit breaker of the method, but not through the interceptors
+ * executed after GuardEE: the target method is invoked directly.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+public @interface Hedge {
+    /**
+     * @return the percentile of the observed latencies after which a hedged attempt is started
+     */
+    double percentile() default 95;
+
+    /**
+     * @return the delay after which a hedged attempt is started while not enough latencies were observed
+     */
+    long delay() default 100;
+
+    ChronoUnit delayUnit() default ChronoUnit.MILLIS;
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Limits the rate of the calls of a method, for example to honour the quota of a remote API.
+ * 
+ * Calls beyond the rate wait, at most for the given maximum wait, for their turn; calls that would wait longer fail
+ * with a {@link RateLimitExceededException}. By default calls do not wait. Methods can share a rate by naming
+ * a group with the {@code group} parameter of RateLimit in the configuration.
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+public @interface RateLimit {
+    /**
+     * @return the number of calls allowed per period, calls can be made in bursts of that size
+     */
+    int value();
+
+    long period() default 1;
+
+    ChronoUnit periodUnit() default ChronoUnit.SECONDS;
+
+    /**
+     * @return the maximum time a call waits for its turn, 0 to fail immediately
+     */
+    long maxWait() default 0;
+
+    ChronoUnit maxWaitUnit() default ChronoUnit.MILLIS;
+}
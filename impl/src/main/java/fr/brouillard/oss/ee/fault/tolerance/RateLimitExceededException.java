@@ -13,31 +13,18 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package fr.brouillard.oss.ee.fault.tolerance.circuit_breaker;
+package fr.brouillard.oss.ee.fault.tolerance;
 
-import java.util.LinkedList;
+import org.eclipse.microprofile.faulttolerance.exceptions.FaultToleranceException;
 
-/*
- * TODO very simple implementation, to be replaced probably with a fixed sized array in the CircuitBreakerHandlerImpl
+/**
+ * Thrown when a call of a method annotated with {@link RateLimit} cannot be made within its maximum wait.
  */
-public class LimitedQueue<E> extends LinkedList<E> {
-    private int limit;
-
-    public LimitedQueue(int limit) {
-        this.limit = limit;
+public class RateLimitExceededException extends FaultToleranceException {
+    public RateLimitExceededException() {
     }
 
-    @Override
-    public boolean add(E o) {
-        if (limit > 0) {
-            boolean added = super.add(o);
-            while (added && size() > limit) {
-                super.remove();
-            }
-
-            return added;
-        }
-
-        return false;
+    public RateLimitExceededException(String message) {
+        super(message);
     }
-}
\ No newline at end of file
+}
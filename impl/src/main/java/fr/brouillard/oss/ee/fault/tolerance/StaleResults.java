@@ -0,0 +1,37 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance;
+
+import fr.brouillard.oss.ee.fault.tolerance.fallback.FallbackCache;
+
+/**
+ * Tells callers of methods whose Fallback uses a stale cache if the result they got is a previous, cached, result.
+ * 
+ * The flag is only available for synchronous calls: stage returning methods complete their stage on another thread,
+ * their callers cannot tell a cached result from a fresh one.
+ */
+public final class StaleResults {
+    private StaleResults() {
+    }
+
+    /**
+     * @return true if the latest synchronous call made by the current thread to a method using a fallback cache failed
+     * and was given the cached result of a previous call
+     */
+    public static boolean lastWasStale() {
+        return FallbackCache.lastServedStale();
+    }
+}
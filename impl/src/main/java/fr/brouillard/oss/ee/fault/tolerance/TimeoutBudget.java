@@ -0,0 +1,57 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance;
+
+import java.util.concurrent.TimeUnit;
+
+import fr.brouillard.oss.ee.fault.tolerance.misc.CallContext;
+
+/**
+ * Gives application code access to the time budget of the {@code @Timeout} guarded call being executed
+ * by the current thread.
+ * 
+ * It is mainly useful for methods using the cooperative timeout mode: instead of being interrupted, they can
+ * stop doing work that will be discarded or give the remaining budget to the clients they use (JDBC, HTTP...).
+ */
+public final class TimeoutBudget {
+    private TimeoutBudget() {
+    }
+
+    /**
+     * @return true if the current thread executes a call guarded by a timeout
+     */
+    public static boolean isGuarded() {
+        return CallContext.current() != null;
+    }
+
+    /**
+     * Gives the time left before the earliest deadline of the guarded calls executed by the current thread.
+     * @param unit the unit of the returned value
+     * @return the remaining time, negative or 0 if a deadline is passed, {@link Long#MAX_VALUE} if no call is guarded
+     */
+    public static long remaining(TimeUnit unit) {
+        CallContext current = CallContext.current();
+        return (current != null) ? current.remaining(unit) : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if the deadline of a guarded call executed by the current thread is passed
+     */
+    public static boolean isExhausted() {
+        CallContext current = CallContext.current();
+        return current != null && (current.wasTimeoutReached() || current.remaining(TimeUnit.NANOSECONDS) <= 0);
+    }
+}
@@ -15,8 +15,21 @@
  */
 package fr.brouillard.oss.ee.fault.tolerance.bulkhead;
 
+import java.lang.reflect.Method;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.concurrent.ManagedThreadFactory;
@@ -24,15 +37,21 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.interceptor.InvocationContext;
 
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
 import org.eclipse.microprofile.faulttolerance.exceptions.BulkheadException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import fr.brouillard.oss.ee.fault.tolerance.BulkheadPriority;
 import fr.brouillard.oss.ee.fault.tolerance.config.BulkheadContext;
 import fr.brouillard.oss.ee.fault.tolerance.config.Configurator;
+import fr.brouillard.oss.ee.fault.tolerance.config.FaultToleranceProperties;
+import fr.brouillard.oss.ee.fault.tolerance.config.Globals;
 import fr.brouillard.oss.ee.fault.tolerance.impl.Invoker;
 import fr.brouillard.oss.ee.fault.tolerance.impl.InvokerChain;
+import fr.brouillard.oss.ee.fault.tolerance.misc.CallContext;
 import fr.brouillard.oss.ee.fault.tolerance.misc.DelegateFuture;
+import fr.brouillard.oss.ee.fault.tolerance.misc.Stages;
 
 @ApplicationScoped
 public class BulkheadInvoker implements Invoker {
@@ -43,6 +62,22 @@ public class BulkheadInvoker implements Invoker {
     
     @Resource
     ManagedExecutorService mes;
+
+    @Resource
+    ManagedThreadFactory threadFactory;
+
+    private ConcurrentMap<BulkheadContext, Optional<ExecutorService>> dedicatedExecutors;
+
+    @PostConstruct
+    public void initialize() {
+        dedicatedExecutors = new ConcurrentHashMap<>();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dedicatedExecutors.values().forEach(e -> e.ifPresent(ExecutorService::shutdownNow));
+        dedicatedExecutors.clear();
+    }
     
     @Override
     public Object invoke(InvocationContext context, InvokerChain chain) throws Exception {
@@ -55,6 +90,9 @@ public class BulkheadInvoker implements Invoker {
         }
         
         BulkheadContext bulkhead = optBulkhead.get();
+        if (Stages.isStage(context.getMethod())) {
+            return callStage(bulkhead, context, chain);
+        }
         if (!bulkhead.isAsynchronous()) {
             return callSynchronously(bulkhead, context, chain);
         } else {
@@ -63,25 +101,200 @@ public class BulkheadInvoker implements Invoker {
     }
 
     private Object callAsynchronously(BulkheadContext bulkhead, InvocationContext context, InvokerChain chain) {
+        if (bulkhead.isQueued()) {
+            return callAsynchronouslyQueued(bulkhead, context, chain);
+        }
+
         if (!bulkhead.acquireWaiting()) {
             throw new BulkheadException("cannot acquire a slot in bulkhead waiting queue");
         }
-        
-        return new DelegateFuture(mes.submit(() -> {
-            try {
-                return callSynchronouslyWithWait(bulkhead, context, chain);
-            } finally {
-                bulkhead.releaseWaiting();
+
+        // completion is observable, for example to schedule retries
+        CompletableFuture<Object> completion = new CompletableFuture<>();
+        try {
+            Future<?> task = executor(bulkhead, context).submit(() -> {
+                try {
+                    completion.complete(callSynchronouslyWithWait(bulkhead, context, chain));
+                } catch (Throwable t) {
+                    completion.completeExceptionally(t);
+                } finally {
+                    bulkhead.releaseWaiting();
+                }
+            });
+            return delegate(completion, task);
+        } catch (RejectedExecutionException ree) {
+            bulkhead.releaseWaiting();
+            throw new BulkheadException("bulkhead executor rejected the execution", ree);
+        }
+    }
+
+    private ExecutorService executor(BulkheadContext bulkhead, InvocationContext context) {
+        Optional<ExecutorService> executor = dedicatedExecutors.get(bulkhead);
+        if (executor == null) {
+            executor = dedicatedExecutors.computeIfAbsent(bulkhead, b -> createExecutor(b, context.getMethod()));
+        }
+        return executor.isPresent() ? executor.get() : mes;
+    }
+
+    /**
+     * Creates, if configured, the pool dedicated to an asynchronous bulkhead: sized by the bulkhead, waiting executions
+     * then hold a slot of its queue instead of a thread of the shared executor.
+     */
+    private Optional<ExecutorService> createExecutor(BulkheadContext bulkhead, Method method) {
+        boolean dedicated = FaultToleranceProperties.get(method, Bulkhead.class, Globals.BULKHEAD_DEDICATED_EXECUTOR, Boolean.class).orElse(false);
+        if (!dedicated) {
+            return Optional.empty();
+        }
+
+        int threads = bulkhead.getAdaptiveLimit().map(VegasLimit::getMaxLimit).orElse(bulkhead.getLimit());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, bulkhead.getWaitingTaskQueue())),
+                (threadFactory != null) ? threadFactory : Executors.defaultThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+
+        LOGGER.info("created dedicated executor of {} threads for bulkhead of {}#{}", threads, method.getDeclaringClass().getName(), method.getName());
+        return Optional.of(executor);
+    }
+
+    private Object callAsynchronouslyQueued(BulkheadContext bulkhead, InvocationContext context, InvokerChain chain) {
+        QueuedExecution execution = new QueuedExecution(bulkhead, context, chain, false);
+
+        // only executions refused by the full queue count as rejected
+        if (bulkhead.tryAcquireExecution()) {
+            dispatch(execution);
+        } else if (bulkhead.enqueue(priority(context), deadline(context), execution)) {
+            // a permit may have been released before the execution was queued
+            dispatchQueued(bulkhead);
+        } else {
+            throw new BulkheadException("cannot acquire a slot in bulkhead waiting queue");
+        }
+
+        return delegate(execution.result, null);
+    }
+
+    /**
+     * The permit is held until the returned stage completes. Waiting is only possible through the bulkhead queue,
+     * without a queue calls are refused when no permit is available.
+     */
+    private Object callStage(BulkheadContext bulkhead, InvocationContext context, InvokerChain chain) {
+        QueuedExecution execution = new QueuedExecution(bulkhead, context, chain, true);
+
+        // with a queue, only executions refused by the full queue count as rejected
+        boolean acquired = bulkhead.isQueued() ? bulkhead.tryAcquireExecution() : bulkhead.acquireExecution();
+        if (acquired) {
+            if (bulkhead.isAsynchronous()) {
+                dispatch(execution);
+            } else {
+                execution.run();
+            }
+        } else if (bulkhead.isQueued() && bulkhead.enqueue(priority(context), deadline(context), execution)) {
+            dispatchQueued(bulkhead);
+        } else {
+            return Stages.failed(new BulkheadException("could not acquire execution slot for invocation"));
+        }
+
+        return execution.result;
+    }
+
+    /**
+     * @param outcome completed with the future returned by the asynchronous method
+     * @param task the task executing the method, cancelled with the returned future; null if none
+     */
+    @SuppressWarnings("unchecked")
+    private static DelegateFuture<Object> delegate(CompletableFuture<Object> outcome, Future<?> task) {
+        return new DelegateFuture<>((Future<Future<Object>>) (Future<?>) outcome, task);
+    }
+
+    private void dispatchQueued(BulkheadContext bulkhead) {
+        Runnable next;
+        while ((next = bulkhead.pollQueued()) != null) {
+            dispatch((QueuedExecution) next);
+        }
+    }
+
+    private void dispatch(QueuedExecution execution) {
+        try {
+            executor(execution.bulkhead, execution.context).execute(execution);
+        } catch (RejectedExecutionException ree) {
+            execution.result.completeExceptionally(ree);
+            execution.bulkhead.releaseExecution();
+        }
+    }
+
+    private static int priority(InvocationContext context) {
+        Object priority = context.getContextData().get(BulkheadPriority.CONTEXT_KEY);
+        return (priority instanceof Integer) ? (Integer) priority : BulkheadPriority.current();
+    }
+
+    private static long deadline(InvocationContext context) {
+        Object deadline = context.getContextData().get(BulkheadPriority.DEADLINE_CONTEXT_KEY);
+        if (deadline instanceof Long) {
+            return (Long) deadline;
+        }
+        // the call may be nested in a call guarded by a timeout
+        CallContext outer = CallContext.current();
+        if (outer != null) {
+            long remaining = outer.remaining(TimeUnit.NANOSECONDS);
+            if (remaining != Long.MAX_VALUE) {
+                return System.nanoTime() + remaining;
             }
-        }));
+        }
+        return BulkheadQueue.NO_DEADLINE;
+    }
+
+    /**
+     * Asynchronous execution owning an execution permit once started; at its end the permit goes to
+     * the next queued execution.
+     */
+    private class QueuedExecution implements Runnable {
+        private final BulkheadContext bulkhead;
+        private final InvocationContext context;
+        private final InvokerChain chain;
+        private final boolean stage;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        QueuedExecution(BulkheadContext bulkhead, InvocationContext context, InvokerChain chain, boolean stage) {
+            this.bulkhead = bulkhead;
+            this.context = context;
+            this.chain = chain;
+            this.stage = stage;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            // skip executions cancelled while queued
+            if (result.isDone()) {
+                release(start);
+            } else if (stage) {
+                Stages.invoke(chain, context).whenComplete((r, t) -> {
+                    Stages.complete(result, r, t);
+                    release(start);
+                });
+            } else {
+                try {
+                    result.complete(chain.invoke(context));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                } finally {
+                    release(start);
+                }
+            }
+        }
+
+        private void release(long start) {
+            bulkhead.releaseExecution(System.nanoTime() - start);
+            dispatchQueued(bulkhead);
+        }
     }
 
     private Object callSynchronously(BulkheadContext bulkhead, InvocationContext context, InvokerChain chain) throws Exception {
         if (bulkhead.acquireExecution()) {
+            long start = System.nanoTime();
             try {
                 return chain.invoke(context);
             } finally {
-                bulkhead.releaseExecution();
+                bulkhead.releaseExecution(System.nanoTime() - start);
             }
         } else {
             throw new BulkheadException("could not acquire execution slot for synchronous invocation");
@@ -90,10 +303,11 @@ public class BulkheadInvoker implements Invoker {
     
     private Object callSynchronouslyWithWait(BulkheadContext bulkhead, InvocationContext context, InvokerChain chain) throws Exception {
         if (bulkhead.acquireExecutionWithWait()) {
+            long start = System.nanoTime();
             try {
                 return chain.invoke(context);
             } finally {
-                bulkhead.releaseExecution();
+                bulkhead.releaseExecution(System.nanoTime() - start);
             }
         } else {
             throw new BulkheadException("could not acquire execution slot for synchronous invocation");
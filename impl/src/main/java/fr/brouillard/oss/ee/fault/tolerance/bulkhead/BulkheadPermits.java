@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.bulkhead;
+
+/**
+ * Accounting of the permits of a bulkhead, whose limit can be changed at runtime.
+ * 
+ * When the limit is lowered, permits already acquired stay valid; new acquisitions are refused until
+ * enough of them are released.
+ */
+public interface BulkheadPermits {
+    /**
+     * Acquires a permit if one is available, without waiting.
+     * @return true if the permit was acquired
+     */
+    boolean tryAcquire();
+
+    /**
+     * Acquires a permit, waiting for one to be released if needed.
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    void acquire() throws InterruptedException;
+
+    void release();
+
+    int getLimit();
+
+    void setLimit(int limit);
+
+    int getInUse();
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.bulkhead;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of the asynchronous executions waiting for a permit of a bulkhead.
+ * 
+ * Executions are not handed to an executor while queued: they are dispatched, in the order defined by the
+ * {@link Ordering}, only once a permit is available for them.
+ */
+public class BulkheadQueue {
+    /**
+     * Deadline value of executions without deadline.
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    public enum Ordering {
+        /**
+         * executions are dispatched in arrival order
+         */
+        FIFO,
+        /**
+         * executions with the highest priority are dispatched first, then in arrival order
+         */
+        PRIORITY,
+        /**
+         * executions with the earliest deadline are dispatched first, then in arrival order
+         */
+        DEADLINE,
+        /**
+         * executions are dispatched in arrival order until the queue is half full, then the most recent first:
+         * under overload, the oldest executions are likely to be useless anyway
+         */
+        LIFO_UNDER_OVERLOAD;
+
+        public static Ordering parse(String value) {
+            return Ordering.valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private static final Comparator<Entry> BY_PRIORITY = (e1, e2) -> (e1.priority != e2.priority)
+            ? Integer.compare(e2.priority, e1.priority)
+            : Long.compare(e1.sequence, e2.sequence);
+
+    private static final Comparator<Entry> BY_DEADLINE = (e1, e2) -> {
+        if (e1.deadline != e2.deadline) {
+            if (e1.deadline == NO_DEADLINE) {
+                return 1;
+            }
+            if (e2.deadline == NO_DEADLINE) {
+                return -1;
+            }
+            // nanoTime based values, compare the difference to support overflow
+            long diff = e1.deadline - e2.deadline;
+            if (diff != 0) {
+                return (diff < 0) ? -1 : 1;
+            }
+        }
+        return Long.compare(e1.sequence, e2.sequence);
+    };
+
+    private final Ordering ordering;
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Entry> deque;
+    private final Queue<Entry> heap;
+    private long sequence;
+
+    public BulkheadQueue(Ordering ordering, int capacity) {
+        this.ordering = ordering;
+        this.capacity = capacity;
+        switch (ordering) {
+            case PRIORITY:
+                this.heap = new PriorityQueue<>(Math.min(capacity, 64), BY_PRIORITY);
+                this.deque = null;
+                break;
+            case DEADLINE:
+                this.heap = new PriorityQueue<>(Math.min(capacity, 64), BY_DEADLINE);
+                this.deque = null;
+                break;
+            default:
+                this.heap = null;
+                this.deque = new ArrayDeque<>(Math.min(capacity, 64));
+        }
+    }
+
+    /**
+     * Queues an execution if the queue is not full.
+     * @param priority the priority of the execution, the higher the sooner
+     * @param deadline the {@link System#nanoTime()} based deadline of the execution, {@link #NO_DEADLINE} if none
+     * @param execution the execution to dispatch later on
+     * @return true if the execution was queued
+     */
+    public boolean offer(int priority, long deadline, Runnable execution) {
+        lock.lock();
+        try {
+            if (size() >= capacity) {
+                return false;
+            }
+            Entry entry = new Entry(priority, deadline, sequence++, execution);
+            if (heap != null) {
+                heap.offer(entry);
+            } else {
+                deque.offerLast(entry);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the next execution to dispatch, null if the queue is empty
+     */
+    public Runnable poll() {
+        lock.lock();
+        try {
+            Entry entry;
+            if (heap != null) {
+                entry = heap.poll();
+            } else if (ordering == Ordering.LIFO_UNDER_OVERLOAD && deque.size() * 2 > capacity) {
+                entry = deque.pollLast();
+            } else {
+                entry = deque.pollFirst();
+            }
+            return (entry != null) ? entry.execution : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return size() == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int size() {
+        return (heap != null) ? heap.size() : deque.size();
+    }
+
+    public Ordering getOrdering() {
+        return ordering;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkheadQueue{ordering=" + ordering + ", capacity=" + capacity + '}';
+    }
+
+    private static final class Entry {
+        private final int priority;
+        private final long deadline;
+        private final long sequence;
+        private final Runnable execution;
+
+        private Entry(int priority, long deadline, long sequence, Runnable execution) {
+            this.priority = priority;
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.execution = execution;
+        }
+    }
+}
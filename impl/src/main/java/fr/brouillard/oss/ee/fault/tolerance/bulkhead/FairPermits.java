@@ -0,0 +1,93 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.bulkhead;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fair permits backed by a fair {@link Semaphore}: waiting threads are served in arrival order, at the
+ * price of serializing acquisitions.
+ */
+public class FairPermits implements BulkheadPermits {
+    private final ResizableSemaphore semaphore;
+    private int limit;
+
+    public FairPermits(int limit) {
+        this.limit = limit;
+        this.semaphore = new ResizableSemaphore(limit);
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        // tryAcquire() barges, a timed one honors the fairness
+        try {
+            return semaphore.tryAcquire(0, TimeUnit.SECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void acquire() throws InterruptedException {
+        semaphore.acquire();
+    }
+
+    @Override
+    public void release() {
+        semaphore.release();
+    }
+
+    @Override
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public synchronized void setLimit(int limit) {
+        int delta = limit - this.limit;
+        if (delta > 0) {
+            semaphore.release(delta);
+        } else if (delta < 0) {
+            semaphore.reducePermits(-delta);
+        }
+        this.limit = limit;
+    }
+
+    @Override
+    public int getInUse() {
+        return getLimit() - semaphore.availablePermits();
+    }
+
+    @Override
+    public String toString() {
+        return "FairPermits{limit=" + getLimit() + ", available=" + semaphore.availablePermits() + '}';
+    }
+
+    private static class ResizableSemaphore extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
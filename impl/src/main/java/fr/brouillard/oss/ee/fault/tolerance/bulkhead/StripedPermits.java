@@ -0,0 +1,139 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.bulkhead;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Non fair permits: a single CAS against the current limit admits a call, statistics are kept
+ * in striped counters.
+ * 
+ * Waiting is only used by asynchronous bulkheads; the lock is never taken on the fast path, releases
+ * only signal when a thread is actually waiting.
+ */
+public class StripedPermits implements BulkheadPermits {
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private volatile int limit;
+
+    public StripedPermits(int limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        if (admit()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    private boolean admit() {
+        for (;;) {
+            int current = inUse.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inUse.compareAndSet(current, current + 1)) {
+                acquired.increment();
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void acquire() throws InterruptedException {
+        if (admit()) {
+            return;
+        }
+
+        waiters.incrementAndGet();
+        try {
+            lock.lockInterruptibly();
+            try {
+                while (!admit()) {
+                    released.await();
+                }
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void release() {
+        inUse.decrementAndGet();
+        if (waiters.get() > 0) {
+            signal(false);
+        }
+    }
+
+    private void signal(boolean all) {
+        lock.lock();
+        try {
+            if (all) {
+                released.signalAll();
+            } else {
+                released.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public void setLimit(int limit) {
+        int previous = this.limit;
+        this.limit = limit;
+        if (limit > previous && waiters.get() > 0) {
+            signal(true);
+        }
+    }
+
+    @Override
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    public long getAcquired() {
+        return acquired.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "StripedPermits{limit=" + limit + ", inUse=" + inUse.get() + ", waiters=" + waiters.get() + '}';
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.bulkhead;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit adapted from the measured latency, following TCP Vegas.
+ * 
+ * The lowest latency observed is taken as the latency without queueing; the number of calls queued in the
+ * dependency is estimated as {@code limit * (1 - noLoadRtt / rtt)}. The limit grows while this estimation
+ * stays low, and shrinks when it gets high, staying within configured bounds.
+ * 
+ * The no load latency slowly drifts up so that a permanent change of the dependency latency is eventually accepted.
+ */
+public class VegasLimit {
+    private static final double NO_LOAD_RTT_DRIFT = 0.001;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder samples = new LongAdder();
+
+    private volatile int limit;
+    private volatile long noLoadRtt = Long.MAX_VALUE;
+    private volatile long lastRtt;
+
+    public VegasLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("adaptive bulkhead limits must verify 0 < min <= max, got min=" + minLimit + ", max=" + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Records the latency of a call and adapts the limit.
+     * 
+     * Samples arriving while another one is being applied are only counted, this keeps the accounting
+     * away from the calling threads.
+     * @param rttInNanos the duration of the call
+     * @param inFlight the number of calls executing when the call ended
+     * @return the limit to apply
+     */
+    public int onSample(long rttInNanos, int inFlight) {
+        samples.increment();
+        if (rttInNanos <= 0 || !lock.tryLock()) {
+            return limit;
+        }
+        try {
+            lastRtt = rttInNanos;
+            long noLoad = noLoadRtt;
+            if (noLoad == Long.MAX_VALUE || rttInNanos < noLoad) {
+                noLoadRtt = rttInNanos;
+                return limit;
+            }
+            noLoadRtt = noLoad + Math.max(1, (long) (noLoad * NO_LOAD_RTT_DRIFT));
+
+            int current = limit;
+            double log = Math.max(1, Math.log10(current));
+            double queued = current * (1 - (double) noLoad / rttInNanos);
+            // thresholds are bounded for small limits to still react to a saturated dependency
+            double alpha = Math.min(3 * log, current / 4.0);
+            double beta = Math.min(6 * log, current / 2.0);
+
+            int next = current;
+            if (queued <= alpha) {
+                // only grow when the limit is actually used
+                if (inFlight * 2 >= current) {
+                    next = current + (int) log;
+                }
+            } else if (queued >= beta) {
+                next = current - (int) log;
+            }
+
+            limit = Math.max(minLimit, Math.min(maxLimit, next));
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * @return the latency considered as the one without load, in nanoseconds, {@link Long#MAX_VALUE} before the first sample
+     */
+    public long getNoLoadRtt() {
+        return noLoadRtt;
+    }
+
+    /**
+     * @return the latency of the last applied sample, in nanoseconds
+     */
+    public long getLastRtt() {
+        return lastRtt;
+    }
+
+    public long getSamples() {
+        return samples.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "VegasLimit{limit=" + limit + ", min=" + minLimit + ", max=" + maxLimit + ", noLoadRtt=" + noLoadRtt + ", lastRtt=" + lastRtt + '}';
+    }
+}
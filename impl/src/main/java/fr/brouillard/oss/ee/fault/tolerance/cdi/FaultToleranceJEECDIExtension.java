@@ -18,10 +18,13 @@ package fr.brouillard.oss.ee.fault.tolerance.cdi;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.enterprise.event.Observes;
 import javax.enterprise.inject.spi.AnnotatedType;
 import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.BeforeShutdown;
 import javax.enterprise.inject.spi.DeploymentException;
 import javax.enterprise.inject.spi.Extension;
 import javax.enterprise.inject.spi.ProcessAnnotatedType;
@@ -33,14 +36,25 @@ import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
 import org.eclipse.microprofile.faulttolerance.Fallback;
 import org.eclipse.microprofile.faulttolerance.Retry;
 import org.eclipse.microprofile.faulttolerance.Timeout;
+import org.eclipse.microprofile.faulttolerance.exceptions.FaultToleranceDefinitionException;
 
+import fr.brouillard.oss.ee.fault.tolerance.Hedge;
+import fr.brouillard.oss.ee.fault.tolerance.RateLimit;
+import fr.brouillard.oss.ee.fault.tolerance.SingleFlight;
 import fr.brouillard.oss.ee.fault.tolerance.config.AnnotationFinder;
+import fr.brouillard.oss.ee.fault.tolerance.fallback.FallbackMethods;
 
 public class FaultToleranceJEECDIExtension implements Extension {
-    public <T> void processAnnotatedType(@Observes @WithAnnotations({Retry.class, Timeout.class, Fallback.class, Bulkhead.class, CircuitBreaker.class}) ProcessAnnotatedType<T> pat, BeanManager beanManager) {
+    private final Set<Class<?>> indexedClasses = ConcurrentHashMap.newKeySet();
+
+    public <T> void processAnnotatedType(@Observes @WithAnnotations({Retry.class, Timeout.class, Fallback.class, Bulkhead.class, CircuitBreaker.class, Hedge.class, SingleFlight.class, RateLimit.class}) ProcessAnnotatedType<T> pat, BeanManager beanManager) {
         AnnotatedType<T> annotatedType = pat.getAnnotatedType();
         
         checkAnnotatedTypeAnnotations(annotatedType);
+
+        AnnotationFinder.index(annotatedType.getJavaClass());
+        indexFallbackMethods(annotatedType.getJavaClass());
+        indexedClasses.add(annotatedType.getJavaClass());
         
         if (!annotatedType.isAnnotationPresent(FaultToleranceJEE.class)) {
             Annotation ftJEEAnnotation = new Annotation() {
@@ -56,6 +70,20 @@ public class FaultToleranceJEECDIExtension implements Extension {
         }
     }
 
+    public void beforeShutdown(@Observes BeforeShutdown bs) {
+        indexedClasses.forEach(AnnotationFinder::evict);
+        indexedClasses.forEach(FallbackMethods::evict);
+        indexedClasses.clear();
+    }
+
+    private void indexFallbackMethods(Class<?> aClass) {
+        try {
+            FallbackMethods.index(aClass);
+        } catch (FaultToleranceDefinitionException e) {
+            throw new DeploymentException(e.getMessage(), e);
+        }
+    }
+
     private <T> void checkAnnotatedTypeAnnotations(AnnotatedType<T> annotatedType) {
         Method[] methods = annotatedType.getJavaClass().getMethods();
         Class<T> studyClass = annotatedType.getJavaClass();
@@ -71,6 +99,61 @@ public class FaultToleranceJEECDIExtension implements Extension {
         checkAsynchronous(studyClass, m);
         checkFallback(studyClass, m);
         checkBulkhead(studyClass, m);
+        checkHedge(studyClass, m);
+        checkRateLimit(studyClass, m);
+    }
+
+    private <T> void checkRateLimit(Class<T> studyClass, Method m) {
+        AnnotationFinder.AnnotationFindResult<RateLimit> result = AnnotationFinder.find(RateLimit.class, studyClass, m);
+
+        if (result.getAnnotation().isPresent()) {
+            RateLimit rateLimit = result.getAnnotation().get();
+
+            if (rateLimit.value() < 1) {
+                throw new DeploymentException(String.format("%s#%s uses bad value for RateLimit#value: %d"
+                        , studyClass.getName()
+                        , m.getName()
+                        , rateLimit.value()
+                ));
+            }
+            if (rateLimit.period() < 1) {
+                throw new DeploymentException(String.format("%s#%s uses bad value for RateLimit#period: %d"
+                        , studyClass.getName()
+                        , m.getName()
+                        , rateLimit.period()
+                ));
+            }
+            if (rateLimit.maxWait() < 0) {
+                throw new DeploymentException(String.format("%s#%s uses bad value for RateLimit#maxWait: %d"
+                        , studyClass.getName()
+                        , m.getName()
+                        , rateLimit.maxWait()
+                ));
+            }
+        }
+    }
+
+    private <T> void checkHedge(Class<T> studyClass, Method m) {
+        AnnotationFinder.AnnotationFindResult<Hedge> result = AnnotationFinder.find(Hedge.class, studyClass, m);
+
+        if (result.getAnnotation().isPresent()) {
+            Hedge hedge = result.getAnnotation().get();
+
+            if (hedge.percentile() <= 0 || hedge.percentile() > 100) {
+                throw new DeploymentException(String.format("%s#%s uses bad value for Hedge#percentile: %s"
+                        , studyClass.getName()
+                        , m.getName()
+                        , hedge.percentile()
+                ));
+            }
+            if (hedge.delay() < 0) {
+                throw new DeploymentException(String.format("%s#%s uses bad value for Hedge#delay: %d"
+                        , studyClass.getName()
+                        , m.getName()
+                        , hedge.delay()
+                ));
+            }
+        }
     }
 
     private <T> void checkBulkhead(Class<T> studyClass, Method m) {
@@ -98,7 +181,7 @@ public class FaultToleranceJEECDIExtension implements Extension {
     }
 
     private <T> void checkFallback(Class<T> studyClass, Method m) {
-        // nothing deploy time for the moment
+        // fallback methods are resolved when the class is indexed
     }
 
     private <T> void checkAsynchronous(Class<T> studyClass, Method m) {
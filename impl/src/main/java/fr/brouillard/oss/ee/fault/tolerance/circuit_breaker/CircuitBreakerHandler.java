@@ -16,7 +16,10 @@
 package fr.brouillard.oss.ee.fault.tolerance.circuit_breaker;
 
 public interface CircuitBreakerHandler {
-    void enter();
+    /**
+     * @return true if the call was admitted as a trial call of the half-opened circuit, and holds one of its permits
+     */
+    boolean enter();
 
     void success();
 
@@ -16,165 +16,213 @@
 package fr.brouillard.oss.ee.fault.tolerance.circuit_breaker;
 
 import java.time.Duration;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
 import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
 
 import fr.brouillard.oss.ee.fault.tolerance.config.Globals;
-import fr.brouillard.oss.ee.fault.tolerance.misc.Exceptions;
+import fr.brouillard.oss.ee.fault.tolerance.misc.ExceptionClassifier;
 
 public class CircuitBreakerHandlerImpl implements CircuitBreakerHandler {
 
-    private final Class<? extends Throwable>[] failOn;
+    private final ExceptionClassifier failOn;
     private final long windowDuration;
     private final double failureRatio;
     private final int successThreshold;
-    private final ReentrantReadWriteLock rwLock;
-    private final ReentrantReadWriteLock.ReadLock readLock;
-    private final ReentrantReadWriteLock.WriteLock writeLock;
-    private final int volumeThreshold;
     private final boolean skipFirstSuccessForRatioComputation;
-    private CircuitState state = CircuitState.CLOSED;
-    private LimitedQueue<Execution> calls;
+    private final ExecutionWindow calls;
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.CLOSED);
 
     public CircuitBreakerHandlerImpl(CircuitBreaker circuitBreaker) {
+        this(circuitBreaker, new ExecutionRingBuffer(circuitBreaker.requestVolumeThreshold()));
+    }
+
+    public CircuitBreakerHandlerImpl(CircuitBreaker circuitBreaker, ExecutionWindow window) {
         this(
                 circuitBreaker.failOn(),
                 Duration.of(circuitBreaker.delay(), circuitBreaker.delayUnit()).toNanos(),
-                circuitBreaker.requestVolumeThreshold(),
+                window,
                 circuitBreaker.failureRatio(),
                 circuitBreaker.successThreshold()
         );
     }
 
     public CircuitBreakerHandlerImpl(Class<? extends Throwable>[] failOn, long windowDurationInNanos, int volumeThreshold, double failureRatio, int successThreshold) {
-        this.failOn = failOn;
-        this.volumeThreshold = volumeThreshold;
-        this.calls = new LimitedQueue<>(volumeThreshold);
+        this(failOn, windowDurationInNanos, new ExecutionRingBuffer(volumeThreshold), failureRatio, successThreshold);
+    }
+
+    public CircuitBreakerHandlerImpl(Class<? extends Throwable>[] failOn, long windowDurationInNanos, ExecutionWindow window, double failureRatio, int successThreshold) {
+        this.failOn = new ExceptionClassifier(failOn);
+        this.calls = window;
         this.windowDuration = windowDurationInNanos;
         this.failureRatio = failureRatio;
         this.successThreshold = successThreshold;
 
-        this.rwLock = new ReentrantReadWriteLock(true);
-        this.readLock = rwLock.readLock();
-        this.writeLock = rwLock.writeLock();
-
         this.skipFirstSuccessForRatioComputation = !Boolean.getBoolean(Globals.FT_CIRCUIT_BREAKER_FAILURE_RATIO_STRICT);
     }
 
+    /**
+     * Checks that a call can go through the circuit.
+     * When the circuit is half-opened, at most {@code successThreshold} trial calls are admitted concurrently,
+     * others are rejected until the outcomes of the trial calls are known.
+     * @return true if the call is a trial call, it holds a permit to give back through {@link #success(boolean)},
+     * {@link #onFailure(Exception, boolean)} or {@link #release(boolean)}
+     * @throws CircuitBreakerOpenException if the call is not allowed
+     */
     @Override
-    public void enter() {
-        long now = System.nanoTime();
-        long lastFailure = lastFailure();
-
-        if (CircuitState.OPENED == state && (lastFailure < now - windowDuration)) {
-            setState(CircuitState.SEMI_OPENED);
-        }
+    public boolean enter() {
+        Status current = status.get();
+        while (CircuitState.CLOSED != current.state) {
+            Status next;
+            if (CircuitState.OPENED == current.state) {
+                if (System.nanoTime() - current.openedAt <= windowDuration) {
+                    throw new CircuitBreakerOpenException();
+                }
+                // only one caller wins the transition, it holds the first trial permit
+                next = Status.semiOpened(current.openedAt, 0, 1);
+            } else {
+                if (current.permits >= successThreshold) {
+                    throw new CircuitBreakerOpenException();
+                }
+                next = Status.semiOpened(current.openedAt, current.probes, current.permits + 1);
+            }
 
-        if (CircuitState.OPENED == state) {
-            throw new CircuitBreakerOpenException();
+            if (status.compareAndSet(current, next)) {
+                return true;
+            }
+            current = status.get();
         }
+        return false;
     }
 
     public void enter(int id) {
         try{
-            System.out.println(String.format("[%d] before::enter - %s", id, state));
+            System.out.println(String.format("[%d] before::enter - %s", id, getState()));
             enter();
         } finally {
-            System.out.println(String.format("[%d] after::enter - %s", id, state));
+            System.out.println(String.format("[%d] after::enter - %s", id, getState()));
         }
     }
 
-    private void setState(CircuitState newState) {
-        this.state = newState;
-    }
-
     public void success(int id) {
         try{
-            System.out.println(String.format("[%d] before::success - %s", id, state));
+            System.out.println(String.format("[%d] before::success - %s", id, getState()));
             success();
         } finally {
-            System.out.println(String.format("[%d] after::success - %s", id, state));
+            System.out.println(String.format("[%d] after::success - %s", id, getState()));
         }
     }
+    /**
+     * Records a success, counted as a successful trial call if the circuit is half-opened.
+     */
     @Override
     public void success() {
-        try {
-            if (writeLock.tryLock(2, TimeUnit.SECONDS)) {
-                mark(false);
-                if (CircuitState.SEMI_OPENED == state) {
-                    long lastFailure = lastFailure();
-                    int success = consecutiveSuccessAfterFailure(lastFailure);
-                    if (success >= successThreshold) {
-                        setState(CircuitState.CLOSED);
-                    }
-                }
-            } else {
-                throw new RuntimeException("cannot acquire lock to mark execution");
-            }
-        } catch (InterruptedException ex) {
-            throw new RuntimeException("interrupted while acquiring lock to mark execution");
-        } finally {
-            writeLock.unlock();
-        }
+        success(true);
     }
 
-    private int consecutiveSuccessAfterFailure(long lastFailure) {
-        return (int)calls.stream().filter(e -> e.isSuccess() && e.getTime() >= lastFailure).count();
+    /**
+     * Records a success.
+     * @param trial true if the call was admitted as a trial call by {@link #enter()}; other calls neither count as
+     * successful trial calls nor give back a permit
+     */
+    public void success(boolean trial) {
+        mark(false);
+        if (!trial) {
+            return;
+        }
+
+        Status current = status.get();
+        while (CircuitState.SEMI_OPENED == current.state) {
+            int probes = current.probes + 1;
+            Status next = (probes >= successThreshold) ? Status.CLOSED : Status.semiOpened(current.openedAt, probes, releasePermit(current));
+            if (status.compareAndSet(current, next)) {
+                return;
+            }
+            current = status.get();
+        }
     }
 
-    private long lastFailure() {
-        return calls.stream().filter(e -> !e.isSuccess()).max((o1, o2)->Long.compare(o1.getTime(), o2.getTime())).map(Execution::getTime).orElse(0l);
+    private static int releasePermit(Status status) {
+        return Math.max(0, status.permits - 1);
     }
 
     private void mark(boolean failure) {
-        Long currentTime = System.nanoTime();
-        calls.add(new Execution(currentTime, !failure));
+        calls.record(System.nanoTime(), !failure);
     }
 
     public Throwable onFailure(Throwable t, int id) {
         try{
-            System.out.println(String.format("[%d] before::failure - %s", id, state));
-            boolean failure = Exceptions.isAssignableToAnyOf(failOn, t);
-            mark(failure);
-
-                if (failure) {
-                    if (CircuitState.SEMI_OPENED == state) {
-                        setState(CircuitState.OPENED);
-                    } else {
-                        double calculatedFailureRation = ratio(id);
-                        if (calculatedFailureRation >= failureRatio) {
-                            setState(CircuitState.OPENED);
-                        }
-                    }
-            }
-
-            return t;
+            System.out.println(String.format("[%d] before::failure - %s", id, getState()));
+            return handleFailure(t);
         } finally {
-            System.out.println(String.format("[%d] after::failure - %s", id, state));
+            System.out.println(String.format("[%d] after::failure - %s", id, getState()));
         }
     }
 
     @Override
     public Exception onFailure(Exception t) {
-        boolean failure = Exceptions.isAssignableToAnyOf(failOn, t);
+        handleFailure(t, true);
+        return t;
+    }
+
+    /**
+     * Records the failure of a call.
+     * @param trial true if the call was admitted as a trial call by {@link #enter()}; failures of other calls
+     * do not reopen a half-opened circuit
+     */
+    public Exception onFailure(Exception t, boolean trial) {
+        handleFailure(t, trial);
+        return t;
+    }
+
+    /**
+     * Gives back the permit of a trial call that ended without an outcome to record, for example on an {@link Error}.
+     * @param trial true if the call was admitted as a trial call by {@link #enter()}
+     */
+    public void release(boolean trial) {
+        if (trial) {
+            releaseTrialPermit();
+        }
+    }
+
+    private void releaseTrialPermit() {
+        Status current = status.get();
+        while (CircuitState.SEMI_OPENED == current.state
+                && !status.compareAndSet(current, Status.semiOpened(current.openedAt, current.probes, releasePermit(current)))) {
+            current = status.get();
+        }
+    }
+
+    private Throwable handleFailure(Throwable t) {
+        return handleFailure(t, true);
+    }
+
+    private Throwable handleFailure(Throwable t, boolean trial) {
+        boolean failure = failOn.matches(t);
         mark(failure);
 
+        Status current = status.get();
         if (failure) {
-            if (CircuitState.SEMI_OPENED == state) {
-                setState(CircuitState.OPENED);
-            } else {
+            if (CircuitState.SEMI_OPENED == current.state) {
+                if (trial) {
+                    // concurrent trial calls may update the status, retry until the circuit is reopened;
+                    // the loop only ends once reopened or no longer half-opened, both reset the trial permits
+                    Status opened = Status.opened(System.nanoTime());
+                    while (CircuitState.SEMI_OPENED == current.state && !status.compareAndSet(current, opened)) {
+                        current = status.get();
+                    }
+                }
+            } else if (CircuitState.CLOSED == current.state) {
                 double calculatedFailureRation = ratio();
                 if (calculatedFailureRation >= failureRatio) {
-                    setState(CircuitState.OPENED);
+                    status.compareAndSet(current, Status.opened(System.nanoTime()));
                 }
             }
+        } else if (trial) {
+            // not considered as a failure, the trial call only gives back its permit
+            releaseTrialPermit();
         }
 
         return t;
@@ -185,7 +233,16 @@ public class CircuitBreakerHandlerImpl implements CircuitBreakerHandler {
      * @return the current state
      */
     public CircuitState getState() {
-        return state;
+        return status.get().state;
+    }
+
+    /**
+     * Gives the number of trial calls currently admitted while the circuit is half-opened.
+     * @return the number of half-open permits in use, 0 if the circuit is not half-opened
+     */
+    public int getHalfOpenPermitsInFlight() {
+        Status current = status.get();
+        return (CircuitState.SEMI_OPENED == current.state) ? current.permits : 0;
     }
 
     /**
@@ -193,77 +250,41 @@ public class CircuitBreakerHandlerImpl implements CircuitBreakerHandler {
      * @return the registered executions as a non null collection
      */
     public Collection<Execution> getExecutions() {
-        return new ArrayList<>(calls);
+        return calls.snapshot();
     }
 
     private double ratio() {
-        long now = System.nanoTime();
-        try {
-            if (readLock.tryLock(2, TimeUnit.SECONDS)) {
-                long windowStart = now - windowDuration;
-
-                double callsInWindow = getCallsCount(this.calls, windowStart, skipFirstSuccessForRatioComputation);
-                double failuresInWindow = this.calls.stream().filter(e -> !e.isSuccess() && e.getTime() > windowStart).count();
-
-                if (callsInWindow >= volumeThreshold) {
-                    return failuresInWindow / callsInWindow;
-                } else {
-                    return 0.0d;
-                }
-            };
-        } catch (InterruptedException ex) {
-            throw new RuntimeException("cannot acquire lock to mark execution");
-        } finally {
-            readLock.unlock();
-        }
-
-        return 1.0d;
+        long windowStart = System.nanoTime() - windowDuration;
+        return calls.failureRatio(windowStart, skipFirstSuccessForRatioComputation);
     }
 
-    private long getCallsCount(Collection<Execution> calls, long startOfWindow, boolean skipFirstSucess) {
-        List<Execution> consideredCalls = calls
-                .stream()
-                .filter(e -> e.getTime() > startOfWindow)
-                .collect(Collectors.toCollection(() -> new ArrayList<>(calls.size())));
-        
-        if (skipFirstSucess) {
-            int firstFailureIndex = 0;
-            for (int i = 0; i < consideredCalls.size(); i++) {
-                if (!consideredCalls.get(i).isSuccess()) {
-                    firstFailureIndex = i;
-                    break;
-                }
-            }
-            if (firstFailureIndex < consideredCalls.size()) {
-                consideredCalls = consideredCalls.subList(firstFailureIndex, consideredCalls.size());
-            }
+    /*
+     * Immutable state word of the circuit, swapped atomically on transitions.
+     * It holds the state, the time the circuit was opened and, when half-opened, the number of successful
+     * trial calls and of trial calls in flight.
+     */
+    private static final class Status {
+        private static final Status CLOSED = new Status(CircuitState.CLOSED, 0, 0, 0);
+
+        private final CircuitState state;
+        private final long openedAt;
+        private final int probes;
+        private final int permits;
+
+        private Status(CircuitState state, long openedAt, int probes, int permits) {
+            this.state = state;
+            this.openedAt = openedAt;
+            this.probes = probes;
+            this.permits = permits;
         }
-        
-        return consideredCalls.stream().filter(e -> e.getTime() > startOfWindow).count();
-    }
-
-    private double ratio(int id) {
-        long now = System.nanoTime();
-        try {
-            if (readLock.tryLock(2, TimeUnit.SECONDS)) {
-                long windowStart = now - windowDuration;
 
-                double callsInWindow = getCallsCount(calls, windowStart, skipFirstSuccessForRatioComputation);
-                double failuresInWindow = calls.stream().filter(e -> !e.isSuccess() && e.getTime() > windowStart).count();
-
-                if (callsInWindow >= volumeThreshold) {
-                    return failuresInWindow / callsInWindow;
-                } else {
-                    return 0.0d;
-                }
-            };
-        } catch (InterruptedException ex) {
-            throw new RuntimeException("cannot acquire lock to mark execution");
-        } finally {
-            readLock.unlock();
+        private static Status opened(long openedAt) {
+            return new Status(CircuitState.OPENED, openedAt, 0, 0);
         }
 
-        return 1.0d;
+        private static Status semiOpened(long openedAt, int probes, int permits) {
+            return new Status(CircuitState.SEMI_OPENED, openedAt, probes, permits);
+        }
     }
 
     /* visibility set to package for tests only */
@@ -15,6 +15,8 @@
  */
 package fr.brouillard.oss.ee.fault.tolerance.circuit_breaker;
 
+import java.util.concurrent.CompletableFuture;
+
 import javax.inject.Inject;
 import javax.interceptor.InvocationContext;
 
@@ -23,6 +25,8 @@ import org.eclipse.microprofile.faulttolerance.exceptions.TimeoutException;
 import fr.brouillard.oss.ee.fault.tolerance.impl.ExecutionContextImpl;
 import fr.brouillard.oss.ee.fault.tolerance.impl.Invoker;
 import fr.brouillard.oss.ee.fault.tolerance.impl.InvokerChain;
+import fr.brouillard.oss.ee.fault.tolerance.misc.Cancellation;
+import fr.brouillard.oss.ee.fault.tolerance.misc.Stages;
 
 public class CircuitBreakerInvoker implements Invoker {
     private final CircuitBreakerManager circuitBreakerManager;
@@ -37,13 +41,55 @@ public class CircuitBreakerInvoker implements Invoker {
         ExecutionContextImpl executionContext = new ExecutionContextImpl(context.getMethod(), context.getParameters());
         CircuitBreakerHandlerImpl circuitBreaker = (CircuitBreakerHandlerImpl) circuitBreakerManager.forContext(executionContext);
         
-        circuitBreaker.enter();
+        if (Stages.isStage(context.getMethod())) {
+            return invokeStage(circuitBreaker, context, chain);
+        }
+
+        boolean trial = circuitBreaker.enter();
+        boolean recorded = false;
         try {
             Object result = chain.invoke(context);
-            circuitBreaker.success();
+            recorded = true;
+            circuitBreaker.success(trial);
             return result;
         } catch (Exception problem) {
-            throw circuitBreaker.onFailure(problem);
+            if (Cancellation.isCancelled()) {
+                // the call was abandoned, for example a losing hedged attempt, its failure says nothing of the method
+                throw problem;
+            }
+            recorded = true;
+            throw circuitBreaker.onFailure(problem, trial);
+        } finally {
+            if (!recorded) {
+                // errors are not recorded, the trial permit must still be given back
+                circuitBreaker.release(trial);
+            }
+        }
+    }
+
+    private Object invokeStage(CircuitBreakerHandlerImpl circuitBreaker, InvocationContext context, InvokerChain chain) {
+        boolean trial;
+        try {
+            trial = circuitBreaker.enter();
+        } catch (Exception open) {
+            return Stages.failed(open);
         }
+
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        Stages.invoke(chain, context).whenComplete((r, t) -> {
+            if (t == null) {
+                circuitBreaker.success(trial);
+                result.complete(r);
+                return;
+            }
+            Throwable failure = Stages.unwrap(t);
+            if (failure instanceof Exception) {
+                result.completeExceptionally(circuitBreaker.onFailure((Exception) failure, trial));
+            } else {
+                circuitBreaker.release(trial);
+                result.completeExceptionally(failure);
+            }
+        });
+        return result;
     }
 }
@@ -16,6 +16,9 @@
 package fr.brouillard.oss.ee.fault.tolerance.circuit_breaker;
 
 import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -25,6 +28,8 @@ import javax.enterprise.context.ApplicationScoped;
 
 import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
 
+import fr.brouillard.oss.ee.fault.tolerance.config.FaultToleranceProperties;
+import fr.brouillard.oss.ee.fault.tolerance.config.Globals;
 import fr.brouillard.oss.ee.fault.tolerance.impl.ExecutionContextImpl;
 import fr.brouillard.oss.ee.fault.tolerance.misc.Annotations;
 
@@ -43,6 +48,13 @@ public class CircuitBreakerManager {
         return handlerByMethod.get(name);
     }
 
+    /**
+     * @return the circuit breaker handlers in use, by {@code <classname>#<methodname>}
+     */
+    public Map<String, CircuitBreakerHandler> getHandlers() {
+        return Collections.unmodifiableMap(handlerByMethod);
+    }
+
     public CircuitBreakerHandler forContext(ExecutionContextImpl executionContext) {
         String name = name(executionContext.getMethod());
 
@@ -50,14 +62,24 @@ public class CircuitBreakerManager {
 
         if (handler == null) {
             Optional<CircuitBreaker> cb = Annotations.find(executionContext.getMethod(), CircuitBreaker.class);
-            handler = cb.map(this::createHandler).orElse(ALWAYS_CLOSED);
+            handler = cb.map(c -> createHandler(executionContext.getMethod(), c)).orElse(ALWAYS_CLOSED);
             handlerByMethod.putIfAbsent(name, handler);
         }
 
         return handler;
     }
 
-    private CircuitBreakerHandler createHandler(CircuitBreaker circuitBreaker) {
+    private CircuitBreakerHandler createHandler(Method method, CircuitBreaker circuitBreaker) {
+        String windowMode = FaultToleranceProperties.get(method, CircuitBreaker.class, Globals.CIRCUIT_BREAKER_WINDOW_MODE, String.class).orElse("count");
+
+        if ("time".equalsIgnoreCase(windowMode)) {
+            int buckets = FaultToleranceProperties.get(method, CircuitBreaker.class, Globals.CIRCUIT_BREAKER_WINDOW_BUCKETS, Integer.class)
+                    .orElse(TimeBucketWindow.DEFAULT_BUCKETS);
+            long windowDuration = Duration.of(circuitBreaker.delay(), circuitBreaker.delayUnit()).toNanos();
+
+            return new CircuitBreakerHandlerImpl(circuitBreaker, new TimeBucketWindow(buckets, windowDuration, circuitBreaker.requestVolumeThreshold()));
+        }
+
         return new CircuitBreakerHandlerImpl(circuitBreaker);
     }
 
@@ -0,0 +1,122 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.circuit_breaker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size, lock-free window over the latest executions of a circuit breaker.
+ * 
+ * Timestamps are kept in a primitive array while outcomes are stored in a bitset (a set bit marks a failure).
+ * Writers claim a slot by incrementing a shared sequence and a rolling failure counter is maintained on each write,
+ * so that recording an outcome and computing the failure ratio are O(1) and allocation free.
+ * 
+ * Readers do not synchronize with writers: a concurrent reader can observe a slot claimed but not yet written,
+ * which is acceptable for statistics driving a circuit breaker.
+ */
+public class ExecutionRingBuffer implements ExecutionWindow {
+    private final int capacity;
+    private final AtomicLongArray times;
+    private final AtomicLongArray failureBits;
+    private final AtomicLong sequence = new AtomicLong(0);
+    private final AtomicInteger failures = new AtomicInteger(0);
+
+    public ExecutionRingBuffer(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must be >= 0");
+        }
+        this.capacity = capacity;
+        this.times = new AtomicLongArray(capacity);
+        this.failureBits = new AtomicLongArray((capacity + 63) >>> 6);
+    }
+
+    @Override
+    public void record(long time, boolean success) {
+        if (capacity == 0) {
+            return;
+        }
+
+        int slot = (int) (sequence.getAndIncrement() % capacity);
+        times.set(slot, time);
+
+        int word = slot >>> 6;
+        long mask = 1L << slot;
+        long current;
+        long updated;
+        do {
+            current = failureBits.get(word);
+            updated = success ? (current & ~mask) : (current | mask);
+        } while (current != updated && !failureBits.compareAndSet(word, current, updated));
+
+        boolean wasFailure = (current & mask) != 0;
+        if (!success && !wasFailure) {
+            failures.incrementAndGet();
+        } else if (success && wasFailure) {
+            failures.decrementAndGet();
+        }
+    }
+
+    /**
+     * Computes the failure ratio of the window.
+     * The ratio is only computed when the window is full of executions that occurred after the given start,
+     * otherwise the requested volume is not reached and 0 is returned.
+     * @param windowStart executions that occurred before or at this time are not considered
+     * @param skipLeadingSuccesses when true, successes preceding the first failure of the window are not counted
+     * @return the failure ratio of the window or 0 if the window is not filled enough
+     */
+    @Override
+    public double failureRatio(long windowStart, boolean skipLeadingSuccesses) {
+        long end = sequence.get();
+        if (capacity == 0 || end < capacity) {
+            return 0.0d;
+        }
+
+        int oldest = (int) (end % capacity);
+        if (times.get(oldest) <= windowStart) {
+            return 0.0d;
+        }
+
+        int failuresInWindow = failures.get();
+        if (skipLeadingSuccesses && failuresInWindow > 0 && !isFailure(oldest)) {
+            // leading successes are dropped, the remaining executions cannot reach the window capacity
+            return 0.0d;
+        }
+
+        return (double) failuresInWindow / capacity;
+    }
+
+    @Override
+    public List<CircuitBreakerHandlerImpl.Execution> snapshot() {
+        long end = sequence.get();
+        long start = Math.max(0, end - capacity);
+        List<CircuitBreakerHandlerImpl.Execution> executions = new ArrayList<>((int) (end - start));
+
+        for (long seq = start; seq < end; seq++) {
+            int slot = (int) (seq % capacity);
+            executions.add(new CircuitBreakerHandlerImpl.Execution(times.get(slot), !isFailure(slot)));
+        }
+
+        return executions;
+    }
+
+    private boolean isFailure(int slot) {
+        return (failureBits.get(slot >>> 6) & (1L << slot)) != 0;
+    }
+}
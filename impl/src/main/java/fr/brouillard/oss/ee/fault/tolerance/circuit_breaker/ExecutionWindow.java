@@ -0,0 +1,40 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.circuit_breaker;
+
+import java.util.Collection;
+
+/**
+ * Statistics over the latest executions of a circuit breaker.
+ */
+public interface ExecutionWindow {
+    void record(long time, boolean success);
+
+    /**
+     * Computes the failure ratio of the window.
+     * @param windowStart executions that occurred before or at this time are not considered
+     * @param skipLeadingSuccesses when true, successes preceding the first failure of the window are not counted;
+     *                             implementations that do not keep executions order can ignore it
+     * @return the failure ratio or 0 if not enough executions were recorded
+     */
+    double failureRatio(long windowStart, boolean skipLeadingSuccesses);
+
+    /**
+     * Builds a snapshot of the executions held by the window, oldest first.
+     * @return a non null collection, empty if the window does not keep individual executions
+     */
+    Collection<CircuitBreakerHandlerImpl.Execution> snapshot();
+}
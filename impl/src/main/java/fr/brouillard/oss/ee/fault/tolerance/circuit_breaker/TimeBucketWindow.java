@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.circuit_breaker;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Window made of a fixed number of time buckets, each one holding striped success and failure counters.
+ * 
+ * Recording an execution only increments the counter of the current bucket, and the failure ratio is computed
+ * by summing the buckets still in the window, whatever the number of calls. This suits methods called at very
+ * high rates for which keeping individual executions is not needed.
+ * 
+ * Buckets are recycled lazily when time moves on; a few executions recorded concurrently with a recycling can be lost.
+ * As executions order is not kept, successes preceding the first failure are always counted.
+ */
+public class TimeBucketWindow implements ExecutionWindow {
+    public static final int DEFAULT_BUCKETS = 10;
+
+    private final int volumeThreshold;
+    private final long bucketDuration;
+    private final Bucket[] buckets;
+
+    /**
+     * @param bucketsCount the number of buckets splitting the window duration
+     * @param windowDurationInNanos the duration covered by the window
+     * @param volumeThreshold the minimum number of executions in the window to compute a failure ratio
+     */
+    public TimeBucketWindow(int bucketsCount, long windowDurationInNanos, int volumeThreshold) {
+        if (bucketsCount < 1) {
+            throw new IllegalArgumentException("buckets count must be >= 1");
+        }
+        this.volumeThreshold = volumeThreshold;
+        this.bucketDuration = Math.max(1, windowDurationInNanos / bucketsCount);
+        this.buckets = new Bucket[bucketsCount];
+        for (int i = 0; i < bucketsCount; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    @Override
+    public void record(long time, boolean success) {
+        long epoch = Math.floorDiv(time, bucketDuration);
+        Bucket bucket = buckets[(int) Math.floorMod(epoch, (long) buckets.length)];
+
+        if (bucket.roll(epoch)) {
+            if (success) {
+                bucket.successes.increment();
+            } else {
+                bucket.failures.increment();
+            }
+        }
+    }
+
+    @Override
+    public double failureRatio(long windowStart, boolean skipLeadingSuccesses) {
+        long startEpoch = Math.floorDiv(windowStart, bucketDuration);
+        long successes = 0;
+        long failures = 0;
+
+        for (Bucket bucket : buckets) {
+            if (bucket.epoch.get() >= startEpoch) {
+                successes += bucket.successes.sum();
+                failures += bucket.failures.sum();
+            }
+        }
+
+        long calls = successes + failures;
+        if (calls > 0 && calls >= volumeThreshold) {
+            return (double) failures / calls;
+        }
+        return 0.0d;
+    }
+
+    @Override
+    public Collection<CircuitBreakerHandlerImpl.Execution> snapshot() {
+        return Collections.emptyList();
+    }
+
+    private static class Bucket {
+        private final AtomicLong epoch = new AtomicLong(Long.MIN_VALUE);
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        /*
+         * Makes the bucket represent the given epoch, returns false if it already holds a more recent one.
+         */
+        private boolean roll(long newEpoch) {
+            long current = epoch.get();
+            while (current < newEpoch) {
+                if (epoch.compareAndSet(current, newEpoch)) {
+                    successes.reset();
+                    failures.reset();
+                    return true;
+                }
+                current = epoch.get();
+            }
+            return current == newEpoch;
+        }
+    }
+}
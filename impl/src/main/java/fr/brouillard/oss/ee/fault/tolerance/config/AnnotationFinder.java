@@ -16,13 +16,45 @@
 package fr.brouillard.oss.ee.fault.tolerance.config;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Method;
-import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.interceptor.InvocationContext;
 
+import org.eclipse.microprofile.faulttolerance.Asynchronous;
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Fallback;
+import org.eclipse.microprofile.faulttolerance.Retry;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+
+import fr.brouillard.oss.ee.fault.tolerance.Hedge;
+import fr.brouillard.oss.ee.fault.tolerance.RateLimit;
+import fr.brouillard.oss.ee.fault.tolerance.SingleFlight;
+
 public class AnnotationFinder {
+    /**
+     * Annotations that are indexed ahead of time by {@link #index(Class)}.
+     */
+    private static final Class<?>[] FAULT_TOLERANCE_ANNOTATIONS = new Class<?>[] {
+            Asynchronous.class, Bulkhead.class, CircuitBreaker.class, Fallback.class, Retry.class, Timeout.class, Hedge.class, SingleFlight.class, RateLimit.class
+    };
+
+    /*
+     * Resolution index: values are attached to the Class objects themselves, so entries do not
+     * keep an application classloader alive and vanish with it.
+     */
+    private static final ClassValue<ConcurrentMap<Method, ConcurrentMap<Class<?>, AnnotationFindResult<?>>>> INDEX =
+            new ClassValue<ConcurrentMap<Method, ConcurrentMap<Class<?>, AnnotationFindResult<?>>>>() {
+                @Override
+                protected ConcurrentMap<Method, ConcurrentMap<Class<?>, AnnotationFindResult<?>>> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
     public static <T extends Annotation> AnnotationFindResult<T> find(InvocationContext ic, Class<T> annotationClass) {
         Method invokedMethod = ic.getMethod();
         Object caller = ic.getTarget();
@@ -31,22 +63,59 @@ public class AnnotationFinder {
         return find(annotationClass, callerClass, invokedMethod);
     }
 
+    @SuppressWarnings("unchecked")
     public static <T extends Annotation> AnnotationFindResult<T> find(Class<T> annotationClass, Class<?> classOfCall, Method invokedMethod) {
+        ConcurrentMap<Method, ConcurrentMap<Class<?>, AnnotationFindResult<?>>> resultsByMethod = INDEX.get(classOfCall);
+
+        // plain get first, computeIfAbsent would allocate a capturing lambda on each call
+        ConcurrentMap<Class<?>, AnnotationFindResult<?>> resultsByAnnotation = resultsByMethod.get(invokedMethod);
+        if (resultsByAnnotation == null) {
+            resultsByAnnotation = resultsByMethod.computeIfAbsent(invokedMethod, m -> new ConcurrentHashMap<>(FAULT_TOLERANCE_ANNOTATIONS.length * 2));
+        }
+
+        AnnotationFindResult<?> result = resultsByAnnotation.get(annotationClass);
+        if (result == null) {
+            result = resultsByAnnotation.computeIfAbsent(annotationClass, a -> resolve(annotationClass, classOfCall, invokedMethod));
+        }
+        return (AnnotationFindResult<T>) result;
+    }
+
+    /**
+     * Resolves ahead of time the fault tolerance annotations of all public methods of the given class.
+     * @param aClass the class to index
+     */
+    @SuppressWarnings("unchecked")
+    public static void index(Class<?> aClass) {
+        for (Method m : aClass.getMethods()) {
+            for (Class<?> annotationClass : FAULT_TOLERANCE_ANNOTATIONS) {
+                find((Class<? extends Annotation>) annotationClass, aClass, m);
+            }
+        }
+    }
+
+    /**
+     * Drops all the resolutions previously stored for the given class.
+     * @param aClass the class to remove from the index
+     */
+    public static void evict(Class<?> aClass) {
+        INDEX.remove(aClass);
+    }
+
+    private static <T extends Annotation> AnnotationFindResult<T> resolve(Class<T> annotationClass, Class<?> classOfCall, Method invokedMethod) {
         String searchKey = classOfCall.getName() + "/" + invokedMethod.getName();
 
         // the method is directly declared on the caller
-        if (Arrays.asList(classOfCall.getDeclaredMethods()).contains(invokedMethod)) {
+        if (invokedMethod.getDeclaringClass() == classOfCall) {
             T annotation = invokedMethod.getAnnotation(annotationClass);
-            return new AnnotationFindResult(searchKey, searchKey, annotation);
+            return new AnnotationFindResult<>(searchKey, searchKey, invokedMethod, annotation);
         }
-        ;
 
         return findOnClass(searchKey, classOfCall, invokedMethod, annotationClass);
     }
 
     private static <T extends Annotation> AnnotationFindResult<T> findOnClass(String searchKey, Class<?> aClass, Method invokedMethod, Class<T> annotationClass) {
         if (aClass == null) {
-            return new AnnotationFindResult<>(searchKey, null, null);
+            return new AnnotationFindResult<>(searchKey, null, null, null);
         }
         
         if (aClass.getName().equals(invokedMethod.getDeclaringClass().getName())) {
@@ -54,10 +123,10 @@ public class AnnotationFinder {
             T annotation = invokedMethod.getAnnotation(annotationClass);
             
             if (annotation != null) {
-                return new AnnotationFindResult<>(searchKey, aClass.getName() + "/" + invokedMethod.getName(), annotation);
+                return new AnnotationFindResult<>(searchKey, aClass.getName() + "/" + invokedMethod.getName(), invokedMethod, annotation);
             } else {
                 // last chance we look on the class declaring the method
-                return new AnnotationFindResult<>(searchKey, aClass.getName(), invokedMethod.getDeclaringClass().getDeclaredAnnotation(annotationClass));
+                return new AnnotationFindResult<>(searchKey, aClass.getName(), aClass, invokedMethod.getDeclaringClass().getDeclaredAnnotation(annotationClass));
             }
         }
 
@@ -67,11 +136,13 @@ public class AnnotationFinder {
     public static class AnnotationFindResult<T extends Annotation> {
         private final String searchKey;
         private final String foundKey;
+        private final AnnotatedElement foundOn;
         private final Optional<T> annotation;
 
-        AnnotationFindResult(String searchKey, String foundKey, T annotationValue) {
+        AnnotationFindResult(String searchKey, String foundKey, AnnotatedElement foundOn, T annotationValue) {
             this.searchKey = searchKey;
             this.foundKey = foundKey;
+            this.foundOn = foundOn;
             this.annotation = Optional.ofNullable(annotationValue);
         }
 
@@ -83,6 +154,13 @@ public class AnnotationFinder {
             return foundKey;
         }
 
+        /**
+         * @return the method or class the search ended on, identifies the declaration of the annotation
+         */
+        public AnnotatedElement getFoundOn() {
+            return foundOn;
+        }
+
         public Optional<T> getAnnotation() {
             return annotation;
         }
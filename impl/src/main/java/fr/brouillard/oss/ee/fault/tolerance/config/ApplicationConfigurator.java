@@ -15,11 +15,17 @@
  */
 package fr.brouillard.oss.ee.fault.tolerance.config;
 
-import java.util.LinkedHashMap;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntSupplier;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
@@ -27,91 +33,254 @@ import javax.interceptor.InvocationContext;
 
 import org.eclipse.microprofile.faulttolerance.Asynchronous;
 import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.Fallback;
 import org.eclipse.microprofile.faulttolerance.Retry;
 import org.eclipse.microprofile.faulttolerance.Timeout;
+import org.eclipse.microprofile.faulttolerance.exceptions.FaultToleranceDefinitionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import fr.brouillard.oss.ee.fault.tolerance.RateLimit;
+import fr.brouillard.oss.ee.fault.tolerance.bulkhead.BulkheadQueue;
+import fr.brouillard.oss.ee.fault.tolerance.bulkhead.VegasLimit;
+import fr.brouillard.oss.ee.fault.tolerance.fallback.CacheKeyExtractor;
+import fr.brouillard.oss.ee.fault.tolerance.fallback.FallbackCache;
+import fr.brouillard.oss.ee.fault.tolerance.misc.Stages;
+import fr.brouillard.oss.ee.fault.tolerance.rate_limit.RateLimiter;
+import fr.brouillard.oss.ee.fault.tolerance.retry.Backoff;
+import fr.brouillard.oss.ee.fault.tolerance.retry.RetryBudget;
+
 @ApplicationScoped
 public class ApplicationConfigurator implements Configurator {
     private final static Logger LOGGER = LoggerFactory.getLogger(ApplicationConfigurator.class);
 
-    private ReentrantReadWriteLock rw;
-    private Map<String, BulkheadContext> bulkheadContexts;
+    private ConcurrentMap<AnnotatedElement, BulkheadContext> bulkheadContexts;
+    private ConcurrentMap<AnnotationFinder.AnnotationFindResult<Timeout>, Optional<TimeoutContext>> timeoutContexts;
+    private ConcurrentMap<AnnotationFinder.AnnotationFindResult<Retry>, Optional<RetryContext>> retryContexts;
+    private ConcurrentMap<Object, RetryBudget> retryBudgets;
+    private ConcurrentMap<AnnotationFinder.AnnotationFindResult<Fallback>, Optional<FallbackCache>> fallbackCaches;
+    private ConcurrentMap<AnnotationFinder.AnnotationFindResult<RateLimit>, Optional<RateLimiter>> rateLimiterByMethod;
+    private ConcurrentMap<Object, RateLimiter> rateLimiters;
 
     @PostConstruct
     public void initialize() {
-        rw = new ReentrantReadWriteLock(true);
-        bulkheadContexts = new LinkedHashMap<>();
+        bulkheadContexts = new ConcurrentHashMap<>();
+        timeoutContexts = new ConcurrentHashMap<>();
+        retryContexts = new ConcurrentHashMap<>();
+        retryBudgets = new ConcurrentHashMap<>();
+        fallbackCaches = new ConcurrentHashMap<>();
+        rateLimiterByMethod = new ConcurrentHashMap<>();
+        rateLimiters = new ConcurrentHashMap<>();
     }
 
     @Override
     public Optional<TimeoutContext> timeout(InvocationContext ic) {
-        Optional<Timeout> timeoutAnnotation = AnnotationFinder.find(ic, Timeout.class).getAnnotation();
-        return timeoutAnnotation.map(t -> new TimeoutContext(t.value(), t.unit()));
+        // find results are memoized, they identify the resolution for a class & method
+        AnnotationFinder.AnnotationFindResult<Timeout> timeoutFindResult = AnnotationFinder.find(ic, Timeout.class);
+
+        Optional<TimeoutContext> context = timeoutContexts.get(timeoutFindResult);
+        if (context == null) {
+            Method method = ic.getMethod();
+            context = timeoutContexts.computeIfAbsent(timeoutFindResult, r -> r.getAnnotation().map(t -> createTimeoutContext(method, t)));
+        }
+        return context;
+    }
+
+    private TimeoutContext createTimeoutContext(Method method, Timeout t) {
+        boolean cooperative = FaultToleranceProperties.get(method, Timeout.class, Globals.TIMEOUT_COOPERATIVE, Boolean.class).orElse(false);
+        long interruptDelay = FaultToleranceProperties.get(method, Timeout.class, Globals.TIMEOUT_INTERRUPT_DELAY, Long.class).orElse(-1L);
+
+        return new TimeoutContext(t.value(), t.unit(), cooperative, interruptDelay);
     }
 
     @Override
     public Optional<RetryContext> retry(InvocationContext ic) {
-        Optional<Retry> retryAnnotation = AnnotationFinder.find(ic, Retry.class).getAnnotation();
-        return retryAnnotation.map(RetryContext::new);
+        AnnotationFinder.AnnotationFindResult<Retry> retryFindResult = AnnotationFinder.find(ic, Retry.class);
+
+        Optional<RetryContext> context = retryContexts.get(retryFindResult);
+        if (context == null) {
+            Method method = ic.getMethod();
+            context = retryContexts.computeIfAbsent(retryFindResult, r -> r.getAnnotation().map(retry -> createRetryContext(method, retry)));
+        }
+        return context;
+    }
+
+    private RetryContext createRetryContext(Method method, Retry retry) {
+        boolean scheduled = FaultToleranceProperties.get(method, Retry.class, Globals.RETRY_SCHEDULED, Boolean.class).orElse(true);
+
+        Backoff.Strategy strategy = FaultToleranceProperties.get(method, Retry.class, Globals.RETRY_BACKOFF, String.class)
+                .map(Backoff.Strategy::parse)
+                .orElse(Backoff.Strategy.FIXED);
+        long defaultMaxDelay = (retry.maxDuration() > 0) ? Duration.of(retry.maxDuration(), retry.durationUnit()).toMillis() : Long.MAX_VALUE;
+        long maxDelay = FaultToleranceProperties.get(method, Retry.class, Globals.RETRY_MAX_DELAY, Long.class).orElse(defaultMaxDelay);
+        double factor = FaultToleranceProperties.get(method, Retry.class, Globals.RETRY_BACKOFF_FACTOR, Double.class).orElse(Backoff.DEFAULT_FACTOR);
+        Backoff backoff = new Backoff(strategy
+                , Duration.of(retry.delay(), retry.delayUnit()).toMillis()
+                , maxDelay
+                , Duration.of(retry.jitter(), retry.jitterDelayUnit()).toMillis()
+                , factor);
+
+        return new RetryContext(retry, scheduled, backoff, retryBudget(method).orElse(null));
+    }
+
+    private Optional<RetryBudget> retryBudget(Method method) {
+        Optional<Double> ratio = FaultToleranceProperties.get(method, Retry.class, Globals.RETRY_BUDGET_RATIO, Double.class);
+        if (!ratio.isPresent()) {
+            return Optional.empty();
+        }
+        double maxTokens = FaultToleranceProperties.get(method, Retry.class, Globals.RETRY_BUDGET_MAX, Double.class).orElse(Globals.DEFAULT_RETRY_BUDGET_MAX);
+
+        // methods of a group share their budget
+        Object key = FaultToleranceProperties.get(method, Retry.class, Globals.RETRY_BUDGET_GROUP, String.class).map(Object.class::cast).orElse(method);
+        return Optional.of(retryBudgets.computeIfAbsent(key, k -> new RetryBudget(ratio.get(), maxTokens)));
+    }
+
+    /**
+     * @return the retry budgets in use, by group name or by method
+     */
+    public Map<Object, RetryBudget> getRetryBudgets() {
+        return Collections.unmodifiableMap(retryBudgets);
     }
 
     @Override
     public Optional<BulkheadContext> bulkhead(InvocationContext ic) {
         AnnotationFinder.AnnotationFindResult<Bulkhead> bulkheadAnnotationFindResult = AnnotationFinder.find(ic, Bulkhead.class);
-        Optional<Asynchronous> optAsynchronuous = AnnotationFinder.find(ic, Asynchronous.class).getAnnotation();
-
-        ReentrantReadWriteLock.ReadLock readLock = rw.readLock();
-
-        if (bulkheadAnnotationFindResult.getAnnotation().isPresent()) {
-            BulkheadContext context = bulkheadContexts.get(bulkheadAnnotationFindResult.getSearchKey());
-            
-            try {
-                if (readLock.tryLock() || readLock.tryLock(5, TimeUnit.SECONDS)) {
-                    try {
-                        if (context == null) {
-                            context = bulkheadContexts.get(bulkheadAnnotationFindResult.getFoundKey());
-                        }
-
-                        if (context != null) {
-                            LOGGER.debug("for [{}], found bulkhead context: {}", bulkheadAnnotationFindResult.getSearchKey(), context);
-                            return Optional.of(context);
-                        }
-                    } finally {
-                        readLock.unlock();
-                    }
-
-                    // no context found on the key, we need to create & register one
-                    ReentrantReadWriteLock.WriteLock writeLock = rw.writeLock();
-                    if (writeLock.tryLock() || writeLock.tryLock(5, TimeUnit.SECONDS)) {
-                        try {
-                            // check we are not unblocked after another thread was creating the context
-                            context = bulkheadContexts.get(bulkheadAnnotationFindResult.getSearchKey());
-                            if (context == null) {
-                                context = bulkheadContexts.get(bulkheadAnnotationFindResult.getFoundKey());
-                            }
-                            if (context == null) {
-                                context = new BulkheadContext(bulkheadAnnotationFindResult.getAnnotation().get(), optAsynchronuous.isPresent());
-                                LOGGER.debug("for [{}], registering under [{}] bulkhead context: {}", bulkheadAnnotationFindResult.getSearchKey(), bulkheadAnnotationFindResult.getFoundKey(), context);
-
-                                bulkheadContexts.put(bulkheadAnnotationFindResult.getFoundKey(), context);
-                            }
-                            return Optional.of(context);
-                        } finally {
-                            writeLock.unlock();
-                        }
-                    } else {
-                        return Optional.empty();
-                    }
-                } else {
-                    return Optional.empty();
-                }
-            } catch (InterruptedException e) {
-                return Optional.empty();
-            }
-        } else {
+
+        if (!bulkheadAnnotationFindResult.getAnnotation().isPresent()) {
             return Optional.empty();
         }
+
+        // contexts are shared by all the methods guarded by the same declaration
+        AnnotatedElement declaration = bulkheadAnnotationFindResult.getFoundOn();
+        BulkheadContext context = bulkheadContexts.get(declaration);
+        if (context == null) {
+            context = bulkheadContexts.computeIfAbsent(declaration, d -> {
+                boolean asynchronous = AnnotationFinder.find(ic, Asynchronous.class).getAnnotation().isPresent();
+                BulkheadContext created = createBulkheadContext(ic.getMethod(), bulkheadAnnotationFindResult.getAnnotation().get(), asynchronous);
+                LOGGER.debug("for [{}], registering under [{}] bulkhead context: {}", bulkheadAnnotationFindResult.getSearchKey(), bulkheadAnnotationFindResult.getFoundKey(), created);
+                return created;
+            });
+        }
+        return Optional.of(context);
+    }
+
+    /**
+     * @return the bulkhead contexts in use, by the method or class declaring the bulkhead
+     */
+    public Map<AnnotatedElement, BulkheadContext> getBulkheadContexts() {
+        return Collections.unmodifiableMap(bulkheadContexts);
+    }
+
+    private BulkheadContext createBulkheadContext(Method method, Bulkhead bulkhead, boolean asynchronous) {
+        boolean fair = FaultToleranceProperties.get(method, Bulkhead.class, Globals.BULKHEAD_FAIR, Boolean.class).orElse(false);
+        long limitRefresh = FaultToleranceProperties.get(method, Bulkhead.class, Globals.BULKHEAD_LIMIT_REFRESH, Long.class).orElse(-1L);
+        IntSupplier limitSource = () -> FaultToleranceProperties.get(method, Bulkhead.class, Globals.BULKHEAD_VALUE, Integer.class).orElse(bulkhead.value());
+
+        int size = limitSource.getAsInt();
+
+        VegasLimit adaptiveLimit = null;
+        String mode = FaultToleranceProperties.get(method, Bulkhead.class, Globals.BULKHEAD_MODE, String.class).orElse("fixed");
+        if ("adaptive".equalsIgnoreCase(mode)) {
+            int minLimit = FaultToleranceProperties.get(method, Bulkhead.class, Globals.BULKHEAD_MIN_LIMIT, Integer.class).orElse(1);
+            int maxLimit = FaultToleranceProperties.get(method, Bulkhead.class, Globals.BULKHEAD_MAX_LIMIT, Integer.class).orElse(10 * size);
+            adaptiveLimit = new VegasLimit(size, minLimit, maxLimit);
+            size = adaptiveLimit.getLimit();
+        }
+
+        // only asynchronous executions wait in a queue
+        BulkheadQueue queue = FaultToleranceProperties.get(method, Bulkhead.class, Globals.BULKHEAD_QUEUE_ORDERING, String.class)
+                .filter(ordering -> asynchronous)
+                .map(BulkheadQueue.Ordering::parse)
+                .map(ordering -> new BulkheadQueue(ordering, bulkhead.waitingTaskQueue()))
+                .orElse(null);
+
+        return new BulkheadContext(size, bulkhead.waitingTaskQueue(), asynchronous, fair, (limitRefresh >= 0) ? limitSource : null, Math.max(0, limitRefresh), adaptiveLimit, queue);
+    }
+
+    @Override
+    public Optional<FallbackCache> fallbackCache(InvocationContext ic) {
+        AnnotationFinder.AnnotationFindResult<Fallback> fallbackFindResult = AnnotationFinder.find(ic, Fallback.class);
+
+        Optional<FallbackCache> cache = fallbackCaches.get(fallbackFindResult);
+        if (cache == null) {
+            Method method = ic.getMethod();
+            cache = fallbackCaches.computeIfAbsent(fallbackFindResult, r -> r.getAnnotation().flatMap(f -> createFallbackCache(method)));
+        }
+        return cache;
+    }
+
+    private Optional<FallbackCache> createFallbackCache(Method method) {
+        boolean enabled = FaultToleranceProperties.get(method, Fallback.class, Globals.FALLBACK_STALE_CACHE, Boolean.class).orElse(false);
+        if (!enabled) {
+            return Optional.empty();
+        }
+        if (Future.class.isAssignableFrom(method.getReturnType()) && !Stages.isStage(method)) {
+            // the returned future is not completed yet, it cannot be kept as a good result
+            LOGGER.warn("{}#{} returns a Future, ignoring Fallback/{}", method.getDeclaringClass().getName(), method.getName(), Globals.FALLBACK_STALE_CACHE);
+            return Optional.empty();
+        }
+        long ttl = FaultToleranceProperties.get(method, Fallback.class, Globals.FALLBACK_STALE_CACHE_TTL, Long.class).orElse(Globals.DEFAULT_FALLBACK_STALE_CACHE_TTL);
+        int size = FaultToleranceProperties.get(method, Fallback.class, Globals.FALLBACK_STALE_CACHE_SIZE, Integer.class).orElse(Globals.DEFAULT_FALLBACK_STALE_CACHE_SIZE);
+        CacheKeyExtractor keyExtractor = FaultToleranceProperties.get(method, Fallback.class, Globals.FALLBACK_STALE_CACHE_KEY, String.class)
+                .map(className -> createKeyExtractor(method, className))
+                .orElse(null);
+
+        LOGGER.debug("for [{}#{}], caching results for fallback: ttl={}ms, size={}", method.getDeclaringClass().getName(), method.getName(), ttl, size);
+        return Optional.of(new FallbackCache(ttl, size, keyExtractor));
+    }
+
+    private CacheKeyExtractor createKeyExtractor(Method method, String className) {
+        try {
+            Class<?> extractorClass = Class.forName(className, true, method.getDeclaringClass().getClassLoader());
+            return (CacheKeyExtractor) extractorClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new FaultToleranceDefinitionException(String.format("%s#%s uses invalid Fallback/%s: %s"
+                    , method.getDeclaringClass().getName()
+                    , method.getName()
+                    , Globals.FALLBACK_STALE_CACHE_KEY
+                    , className
+            ), e);
+        }
+    }
+
+    @Override
+    public Optional<RateLimiter> rateLimiter(InvocationContext ic) {
+        AnnotationFinder.AnnotationFindResult<RateLimit> rateLimitFindResult = AnnotationFinder.find(ic, RateLimit.class);
+
+        Optional<RateLimiter> limiter = rateLimiterByMethod.get(rateLimitFindResult);
+        if (limiter == null) {
+            Method method = ic.getMethod();
+            limiter = rateLimiterByMethod.computeIfAbsent(rateLimitFindResult, r -> r.getAnnotation().map(rateLimit -> createRateLimiter(method, rateLimit)));
+        }
+        return limiter;
+    }
+
+    private RateLimiter createRateLimiter(Method method, RateLimit rateLimit) {
+        int permits = FaultToleranceProperties.get(method, RateLimit.class, Globals.RATE_LIMIT_VALUE, Integer.class).orElse(rateLimit.value());
+        long maxWait = FaultToleranceProperties.get(method, RateLimit.class, Globals.RATE_LIMIT_MAX_WAIT, Long.class)
+                .orElse(Duration.of(rateLimit.maxWait(), rateLimit.maxWaitUnit()).toMillis());
+        long period = FaultToleranceProperties.get(method, RateLimit.class, Globals.RATE_LIMIT_PERIOD, Long.class)
+                .map(TimeUnit.MILLISECONDS::toNanos)
+                .orElse(Duration.of(rateLimit.period(), rateLimit.periodUnit()).toNanos());
+        long maxWaitInNanos = TimeUnit.MILLISECONDS.toNanos(maxWait);
+
+        // methods of a group share their rate, the first one creating it gives its parameters
+        Object key = FaultToleranceProperties.get(method, RateLimit.class, Globals.RATE_LIMIT_GROUP, String.class).map(Object.class::cast).orElse(method);
+        RateLimiter limiter = rateLimiters.computeIfAbsent(key, k -> {
+            LOGGER.debug("for [{}], registering rate limiter under [{}]: {} calls per {}ns, max wait {}ms", method, k, permits, period, maxWait);
+            return new RateLimiter(permits, period, maxWaitInNanos);
+        });
+        if (limiter.getPermits() != permits || limiter.getPeriodInNanos() != period || limiter.getMaxWaitInNanos() != Math.max(0, maxWaitInNanos)) {
+            LOGGER.warn("for [{}], rate limit group [{}] already uses {} calls per {}ns, max wait {}ns; ignoring the configured {} calls per {}ns, max wait {}ms"
+                    , method, key, limiter.getPermits(), limiter.getPeriodInNanos(), limiter.getMaxWaitInNanos(), permits, period, maxWait);
+        }
+        return limiter;
+    }
+
+    /**
+     * @return the rate limiters in use, by group name or by method
+     */
+    public Map<Object, RateLimiter> getRateLimiters() {
+        return Collections.unmodifiableMap(rateLimiters);
     }
 }
@@ -15,119 +15,248 @@
  */
 package fr.brouillard.oss.ee.fault.tolerance.config;
 
-import java.util.concurrent.Semaphore;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
 
-import org.eclipse.microprofile.faulttolerance.Bulkhead;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import fr.brouillard.oss.ee.fault.tolerance.bulkhead.BulkheadPermits;
+import fr.brouillard.oss.ee.fault.tolerance.bulkhead.BulkheadQueue;
+import fr.brouillard.oss.ee.fault.tolerance.bulkhead.FairPermits;
+import fr.brouillard.oss.ee.fault.tolerance.bulkhead.StripedPermits;
+import fr.brouillard.oss.ee.fault.tolerance.bulkhead.VegasLimit;
+
 public class BulkheadContext {
     private final static Logger LOGGER = LoggerFactory.getLogger(BulkheadContext.class);
 
-    private final Semaphore bulkheadSemaphore;
-    private final Semaphore waitingSemaphore;
+    private final BulkheadPermits executionPermits;
+    private final BulkheadPermits waitingPermits;
 
     private final boolean asynchronous;
-    private final int size;
-    private final int waitingSize;
-
-    private final AtomicInteger passedWaiting = new AtomicInteger(0);
-    private final AtomicInteger passedExecuting = new AtomicInteger(0);
+    private final int waitingTaskQueue;
 
-    public BulkheadContext(Bulkhead bulkAnnotation, boolean asynchronuous) {
-        this.asynchronous = asynchronuous;
-        this.size = bulkAnnotation.value();
-        this.waitingSize = bulkAnnotation.value() + bulkAnnotation.waitingTaskQueue();
+    private final IntSupplier limitSource;
+    private final long limitRefreshInNanos;
+    private final AtomicLong nextLimitRefresh;
+    private final VegasLimit adaptiveLimit;
+    private final BulkheadQueue queue;
+    private final LongAdder rejections = new LongAdder();
 
+    /**
+     * @param size the initial maximum number of concurrent executions
+     * @param waitingTaskQueue the maximum number of waiting asynchronous executions
+     * @param asynchronuous true if the guarded method is asynchronous
+     * @param fair true to serve waiting executions in arrival order, false for the higher throughput non fair accounting
+     * @param limitSource if not null, gives the up to date maximum number of concurrent executions
+     * @param limitRefreshInMillis the minimum delay between two reads of the limit source
+     * @param adaptiveLimit if not null, adapts the maximum number of concurrent executions from the measured latency, the limit source is then ignored
+     * @param queue if not null, holds the waiting asynchronous executions until a permit is available instead of the waiting permits;
+     * must be null for synchronous executions
+     */
+    public BulkheadContext(int size, int waitingTaskQueue, boolean asynchronuous, boolean fair, IntSupplier limitSource, long limitRefreshInMillis, VegasLimit adaptiveLimit, BulkheadQueue queue) {
         if (size <= 0) {
             throw new IllegalArgumentException("Bulkhead size must be >= 0");
         }
-        if (asynchronuous && waitingSize <= size) {
+        if (asynchronuous && waitingTaskQueue <= 0) {
             throw new IllegalArgumentException("Bulkhead waitingTaskQueue must be >= 0");
         }
+        if (!asynchronuous && queue != null) {
+            throw new IllegalArgumentException("Bulkhead queue only applies to asynchronous executions");
+        }
 
-        this.bulkheadSemaphore = new Semaphore(size, true);
-        if (asynchronuous) {
-            this.waitingSemaphore = new Semaphore(waitingSize, true);
+        this.asynchronous = asynchronuous;
+        this.waitingTaskQueue = waitingTaskQueue;
+        this.executionPermits = fair ? new FairPermits(size) : new StripedPermits(size);
+        this.queue = queue;
+        if (asynchronuous && queue == null) {
+            int waitingSize = size + waitingTaskQueue;
+            this.waitingPermits = fair ? new FairPermits(waitingSize) : new StripedPermits(waitingSize);
         } else {
-            this.waitingSemaphore = null;
+            this.waitingPermits = null;
         }
+
+        this.adaptiveLimit = adaptiveLimit;
+        this.limitSource = (adaptiveLimit == null) ? limitSource : null;
+        this.limitRefreshInNanos = TimeUnit.MILLISECONDS.toNanos(limitRefreshInMillis);
+        this.nextLimitRefresh = new AtomicLong(System.nanoTime() + limitRefreshInNanos);
     }
 
     public boolean acquireWaiting() {
-        if (asynchronous && waitingSemaphore != null) {
-            try {
-                boolean waitingAllowed = waitingSemaphore.tryAcquire(0, TimeUnit.SECONDS);      // to keep fairness
-                if (waitingAllowed) {
-                    passedWaiting.incrementAndGet();
-                    LOGGER.debug("[WAIT][PASSED] {}::{}, {}", passedWaiting.get(), passedExecuting.get(), this);
-                } else {
-                    LOGGER.debug("[WAIT][FAILED] {}::{}, {}", passedWaiting.get(), passedExecuting.get(), this);
-                }
-                return waitingAllowed;
-            } catch (InterruptedException ie) {
-                return false;
+        if (waitingPermits != null) {
+            refreshLimit();
+            if (waitingPermits.tryAcquire()) {
+                return true;
             }
+            rejections.increment();
+            return false;
         }
 
         return true;
     }
 
     public void releaseWaiting() {
-        if (asynchronous && waitingSemaphore != null) {
-            passedWaiting.decrementAndGet();
-            waitingSemaphore.release();
-            LOGGER.debug("[WAIT][ENDED] {}::{}, {}", passedWaiting.get(), passedExecuting.get(), this);
+        if (waitingPermits != null) {
+            waitingPermits.release();
         }
     }
 
     public boolean acquireExecution() {
-        try {
-            boolean executionAllowed = bulkheadSemaphore.tryAcquire(0, TimeUnit.SECONDS);;
-            if (executionAllowed) {
-                passedExecuting.incrementAndGet();
-                LOGGER.debug("[EXECUTE][PASSED] {}::{}, {}", passedWaiting.get(), passedExecuting.get(), this);
-            } else {
-                LOGGER.debug("[EXECUTE][FAILED] {}::{}, {}", passedWaiting.get(), passedExecuting.get(), this);
-            }
-            return executionAllowed;
-        } catch (InterruptedException ie) {
-            LOGGER.debug("[EXECUTE][FAILED] by interruption {}::{}, {}", passedWaiting.get(), passedExecuting.get(), this);
-            return false;
+        if (tryAcquireExecution()) {
+            return true;
         }
+        rejections.increment();
+        return false;
+    }
+
+    /**
+     * Same as {@link #acquireExecution()} without counting a rejection, for callers queueing the execution when no permit is available.
+     * @return true if an execution permit was acquired
+     */
+    public boolean tryAcquireExecution() {
+        refreshLimit();
+        return executionPermits.tryAcquire();
     }
     
     public boolean acquireExecutionWithWait() {
         try {
-            bulkheadSemaphore.acquire();
-            LOGGER.debug("[EXECUTE][PASSED] {}::{}, {}", passedWaiting.get(), passedExecuting.get(), this);
+            executionPermits.acquire();
             return true;
         } catch (InterruptedException ie) {
-            LOGGER.debug("[EXECUTE][FAILED] by interruption {}::{}, {}", passedWaiting.get(), passedExecuting.get(), this);
+            LOGGER.debug("[EXECUTE][FAILED] by interruption");
             return false;
         }
     }
 
     public void releaseExecution() {
-        passedExecuting.decrementAndGet();
-        bulkheadSemaphore.release();
-        LOGGER.debug("[EXECUTE][ENDED] {}::{}, {}", passedWaiting.get(), passedExecuting.get(), this);
+        executionPermits.release();
+    }
+
+    /**
+     * Releases an execution permit, feeding the adaptive limit if any.
+     * @param durationInNanos the duration of the execution
+     */
+    public void releaseExecution(long durationInNanos) {
+        int inFlight = executionPermits.getInUse();
+        executionPermits.release();
+        if (adaptiveLimit != null) {
+            setLimit(adaptiveLimit.onSample(durationInNanos, inFlight));
+        }
+    }
+
+    /**
+     * @return true if waiting asynchronous executions are held in a {@link BulkheadQueue}
+     */
+    public boolean isQueued() {
+        return queue != null;
+    }
+
+    /**
+     * Queues an asynchronous execution that could not acquire an execution permit.
+     * @param priority the priority of the execution
+     * @param deadline the deadline of the execution, {@link BulkheadQueue#NO_DEADLINE} if none
+     * @param execution the execution, it will own an execution permit when dispatched
+     * @return false if the queue is full
+     */
+    public boolean enqueue(int priority, long deadline, Runnable execution) {
+        if (queue.offer(priority, deadline, execution)) {
+            return true;
+        }
+        rejections.increment();
+        return false;
+    }
+
+    /**
+     * Takes the next queued execution if an execution permit is available, the permit is then owned by the returned execution.
+     * @return the execution to dispatch, null if the queue is empty or no permit is available
+     */
+    public Runnable pollQueued() {
+        while (!queue.isEmpty() && executionPermits.tryAcquire()) {
+            Runnable execution = queue.poll();
+            if (execution != null) {
+                return execution;
+            }
+            // emptied concurrently, loop to not miss an execution queued while we held the permit
+            executionPermits.release();
+        }
+        return null;
     }
 
     public boolean isAsynchronous() {
         return asynchronous;
     }
 
+    public int getLimit() {
+        return executionPermits.getLimit();
+    }
+
+    /**
+     * Changes the maximum number of concurrent executions, the waiting queue keeps its size.
+     * @param limit the new limit, strictly positive
+     */
+    public void setLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Bulkhead size must be >= 0");
+        }
+        if (limit != executionPermits.getLimit()) {
+            LOGGER.debug("bulkhead limit changed from {} to {}", executionPermits.getLimit(), limit);
+            executionPermits.setLimit(limit);
+            if (waitingPermits != null) {
+                waitingPermits.setLimit(limit + waitingTaskQueue);
+            }
+        }
+    }
+
+    public int getWaitingTaskQueue() {
+        return waitingTaskQueue;
+    }
+
+    public int getInUse() {
+        return executionPermits.getInUse();
+    }
+
+    /**
+     * @return the number of executions refused since the creation of the bulkhead
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * @return the adaptive limit of the bulkhead, exposing the measured latencies, empty if its size is fixed
+     */
+    public Optional<VegasLimit> getAdaptiveLimit() {
+        return Optional.ofNullable(adaptiveLimit);
+    }
+
+    private void refreshLimit() {
+        if (limitSource == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        long next = nextLimitRefresh.get();
+        if (now - next < 0 || !nextLimitRefresh.compareAndSet(next, now + limitRefreshInNanos)) {
+            return;
+        }
+        try {
+            setLimit(limitSource.getAsInt());
+        } catch (RuntimeException ex) {
+            LOGGER.warn("cannot refresh bulkhead limit, keeping {}", executionPermits.getLimit(), ex);
+        }
+    }
+
     @Override
     public String toString() {
         return "BulkheadContext{" +
                 "id=" + System.identityHashCode(this) +
                 ", asynchronous=" + asynchronous +
-                ", size=" + size +
-                ", available=" + bulkheadSemaphore.availablePermits() +
-                ((asynchronous)?", waitingSize=" + waitingSize +", waiting available=" + waitingSemaphore.availablePermits():"") +
+                ", execution=" + executionPermits +
+                ((asynchronous)?", waiting=" + ((queue != null) ? queue : waitingPermits):"") +
+                ((adaptiveLimit != null)?", adaptive=" + adaptiveLimit:"") +
+                ", rejections=" + rejections.sum() +
                 '}';
     }
 }
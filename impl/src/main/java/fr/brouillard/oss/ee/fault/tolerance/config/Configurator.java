@@ -19,8 +19,13 @@ import java.util.Optional;
 
 import javax.interceptor.InvocationContext;
 
+import fr.brouillard.oss.ee.fault.tolerance.fallback.FallbackCache;
+import fr.brouillard.oss.ee.fault.tolerance.rate_limit.RateLimiter;
+
 public interface Configurator {
     public Optional<TimeoutContext> timeout(InvocationContext ic);
     public Optional<RetryContext> retry(InvocationContext ic);
     public Optional<BulkheadContext> bulkhead(InvocationContext ic);
+    public Optional<FallbackCache> fallbackCache(InvocationContext ic);
+    public Optional<RateLimiter> rateLimiter(InvocationContext ic);
 }
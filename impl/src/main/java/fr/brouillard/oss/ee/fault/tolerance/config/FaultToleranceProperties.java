@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.config;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Optional;
+
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+/**
+ * Reads GuardEE specific fault tolerance parameters from the MicroProfile configuration.
+ * 
+ * Parameters sit beside the annotation values, using the same layout than the specification, from the most
+ * to the least specific:
+ * <ul>
+ *     <li>{@code <classname>/<methodname>/<annotation>/<parameter>}</li>
+ *     <li>{@code <classname>/<annotation>/<parameter>}</li>
+ *     <li>{@code <annotation>/<parameter>}</li>
+ * </ul>
+ * Lookups are expected to be done once, when the guarding structures of a method are created.
+ */
+public class FaultToleranceProperties {
+    private FaultToleranceProperties() {
+    }
+
+    public static <T> Optional<T> get(Method method, Class<? extends Annotation> annotationClass, String parameter, Class<T> type) {
+        Config config = ConfigProvider.getConfig();
+
+        String suffix = annotationClass.getSimpleName() + "/" + parameter;
+        String className = method.getDeclaringClass().getName();
+
+        Optional<T> value = config.getOptionalValue(className + "/" + method.getName() + "/" + suffix, type);
+        if (!value.isPresent()) {
+            value = config.getOptionalValue(className + "/" + suffix, type);
+        }
+        if (!value.isPresent()) {
+            value = config.getOptionalValue(suffix, type);
+        }
+        return value;
+    }
+}
@@ -17,4 +17,150 @@ package fr.brouillard.oss.ee.fault.tolerance.config;
 
 public class Globals {
     public static final String FT_CIRCUIT_BREAKER_FAILURE_RATIO_STRICT = "ft.circuit-breaker.failure-ratio.strict";
+    /**
+     * System property forcing timeouts to be handled by EJB timers instead of the in process timeout wheel.
+     */
+    public static final String FT_TIMEOUT_EJB_TIMER = "ft.timeout.ejb-timer";
+    /**
+     * System property giving the tick duration, in milliseconds, of the timeout wheel.
+     */
+    public static final String FT_TIMEOUT_WHEEL_TICK = "ft.timeout.wheel.tick";
+    public static final long DEFAULT_TIMEOUT_WHEEL_TICK = 10;
+
+    /**
+     * {@link FaultToleranceProperties} parameter of CircuitBreaker selecting the executions window: {@code count} (default) or {@code time}.
+     */
+    public static final String CIRCUIT_BREAKER_WINDOW_MODE = "windowMode";
+    /**
+     * {@link FaultToleranceProperties} parameter of CircuitBreaker giving the number of buckets of a {@code time} window, defaults to 10.
+     */
+    public static final String CIRCUIT_BREAKER_WINDOW_BUCKETS = "windowBuckets";
+
+    /**
+     * {@link FaultToleranceProperties} parameter of Timeout enabling the cooperative mode: the deadline is published
+     * to the executing thread instead of interrupting it, defaults to false.
+     */
+    public static final String TIMEOUT_COOPERATIVE = "cooperative";
+    /**
+     * {@link FaultToleranceProperties} parameter of Timeout giving, in cooperative mode, the delay in milliseconds after
+     * the timeout at which the executing thread is interrupted anyway; not set by default, the thread is never interrupted.
+     */
+    public static final String TIMEOUT_INTERRUPT_DELAY = "interruptDelay";
+
+    /**
+     * {@link FaultToleranceProperties} parameter of Bulkhead serving waiting executions in arrival order, defaults to false.
+     */
+    public static final String BULKHEAD_FAIR = "fair";
+    /**
+     * {@link FaultToleranceProperties} parameter of Bulkhead overriding its size; it is read again at runtime when
+     * {@link #BULKHEAD_LIMIT_REFRESH} is set.
+     */
+    public static final String BULKHEAD_VALUE = "value";
+    /**
+     * {@link FaultToleranceProperties} parameter of Bulkhead giving the delay in milliseconds between two reads of its size,
+     * not set by default: the size is read once.
+     */
+    public static final String BULKHEAD_LIMIT_REFRESH = "limitRefresh";
+    /**
+     * {@link FaultToleranceProperties} parameter of Bulkhead selecting how its size is managed: {@code fixed} (default)
+     * or {@code adaptive}, the size then moves with the measured latency between {@link #BULKHEAD_MIN_LIMIT} and {@link #BULKHEAD_MAX_LIMIT}.
+     */
+    public static final String BULKHEAD_MODE = "mode";
+    /**
+     * {@link FaultToleranceProperties} parameter of an adaptive Bulkhead giving its minimum size, defaults to 1.
+     */
+    public static final String BULKHEAD_MIN_LIMIT = "minLimit";
+    /**
+     * {@link FaultToleranceProperties} parameter of an adaptive Bulkhead giving its maximum size, defaults to 10 times its value.
+     */
+    public static final String BULKHEAD_MAX_LIMIT = "maxLimit";
+    /**
+     * {@link FaultToleranceProperties} parameter of an asynchronous Bulkhead queueing waiting executions, without holding a thread,
+     * in the given order: {@code fifo}, {@code priority}, {@code deadline} or {@code lifo-under-overload}; not set by default,
+     * waiting executions then block an executor thread.
+     */
+    public static final String BULKHEAD_QUEUE_ORDERING = "queueOrdering";
+    /**
+     * {@link FaultToleranceProperties} parameter of an asynchronous Bulkhead giving it its own pool of threads, sized by its value
+     * and waitingTaskQueue, instead of the shared ManagedExecutorService; defaults to false.
+     */
+    public static final String BULKHEAD_DEDICATED_EXECUTOR = "dedicatedExecutor";
+
+    /**
+     * {@link FaultToleranceProperties} parameter of Retry scheduling the attempts of asynchronous calls after the delay, without
+     * holding a thread, instead of waiting for them in the calling thread; defaults to true.
+     */
+    public static final String RETRY_SCHEDULED = "scheduled";
+    /**
+     * {@link FaultToleranceProperties} parameter of Retry selecting how delays between attempts are computed: {@code fixed} (default),
+     * {@code exponential}, {@code full-jitter} or {@code decorrelated-jitter}.
+     */
+    public static final String RETRY_BACKOFF = "backoff";
+    /**
+     * {@link FaultToleranceProperties} parameter of Retry giving the growth factor of exponential backoffs, defaults to 2.
+     */
+    public static final String RETRY_BACKOFF_FACTOR = "backoffFactor";
+    /**
+     * {@link FaultToleranceProperties} parameter of Retry giving, in milliseconds, the maximum delay between attempts, defaults to the maxDuration.
+     */
+    public static final String RETRY_MAX_DELAY = "maxDelay";
+    /**
+     * {@link FaultToleranceProperties} parameter of Retry enabling a retry budget: the tokens earned by each call succeeding on
+     * its first attempt, a retry spending one token; not set by default, retries are not budgeted.
+     */
+    public static final String RETRY_BUDGET_RATIO = "budgetRatio";
+    /**
+     * {@link FaultToleranceProperties} parameter of Retry giving the capacity of its retry budget, defaults to {@link #DEFAULT_RETRY_BUDGET_MAX}.
+     */
+    public static final String RETRY_BUDGET_MAX = "budgetMax";
+    public static final double DEFAULT_RETRY_BUDGET_MAX = 10;
+    /**
+     * {@link FaultToleranceProperties} parameter of Retry naming a retry budget shared by all the methods of the group,
+     * by default each method has its own budget.
+     */
+    public static final String RETRY_BUDGET_GROUP = "budgetGroup";
+
+    /**
+     * {@link FaultToleranceProperties} parameter of Fallback keeping the latest successful results of the method, by call key,
+     * to serve them when a call fails before using the fallback; defaults to false. It is not supported by asynchronous methods
+     * returning a {@link java.util.concurrent.Future}, stage returning methods are supported.
+     */
+    public static final String FALLBACK_STALE_CACHE = "staleCache";
+    /**
+     * {@link FaultToleranceProperties} parameter of Fallback giving, in milliseconds, how long a cached result can be served,
+     * defaults to {@link #DEFAULT_FALLBACK_STALE_CACHE_TTL}.
+     */
+    public static final String FALLBACK_STALE_CACHE_TTL = "staleCacheTtl";
+    public static final long DEFAULT_FALLBACK_STALE_CACHE_TTL = 60_000;
+    /**
+     * {@link FaultToleranceProperties} parameter of Fallback giving the maximum number of cached results, the least recently
+     * used ones being evicted; defaults to {@link #DEFAULT_FALLBACK_STALE_CACHE_SIZE}.
+     */
+    public static final String FALLBACK_STALE_CACHE_SIZE = "staleCacheSize";
+    public static final int DEFAULT_FALLBACK_STALE_CACHE_SIZE = 100;
+    /**
+     * {@link FaultToleranceProperties} parameter of Fallback naming the {@link fr.brouillard.oss.ee.fault.tolerance.fallback.CacheKeyExtractor}
+     * computing the keys of the cached results; by default all the parameters of the call make the key.
+     */
+    public static final String FALLBACK_STALE_CACHE_KEY = "staleCacheKey";
+
+    /**
+     * {@link FaultToleranceProperties} parameter of RateLimit overriding its number of calls allowed per period.
+     */
+    public static final String RATE_LIMIT_VALUE = "value";
+    /**
+     * {@link FaultToleranceProperties} parameter of RateLimit overriding, in milliseconds, its maximum wait; 0 makes calls
+     * beyond the rate fail immediately.
+     */
+    public static final String RATE_LIMIT_MAX_WAIT = "maxWait";
+    /**
+     * {@link FaultToleranceProperties} parameter of RateLimit overriding, in milliseconds, its period.
+     */
+    public static final String RATE_LIMIT_PERIOD = "period";
+    /**
+     * {@link FaultToleranceProperties} parameter of RateLimit naming a rate shared by all the methods of the group,
+     * by default each method has its own rate. The members of a group must be configured alike: the first one called
+     * gives the parameters of the rate, a warning is logged for each member configured differently.
+     */
+    public static final String RATE_LIMIT_GROUP = "group";
 }
@@ -16,9 +16,14 @@
 package fr.brouillard.oss.ee.fault.tolerance.config;
 
 import java.time.temporal.ChronoUnit;
+import java.util.Optional;
 
 import org.eclipse.microprofile.faulttolerance.Retry;
 
+import fr.brouillard.oss.ee.fault.tolerance.misc.ExceptionClassifier;
+import fr.brouillard.oss.ee.fault.tolerance.retry.Backoff;
+import fr.brouillard.oss.ee.fault.tolerance.retry.RetryBudget;
+
 public class RetryContext {
     private int maxRetries = 0;
     private long delay = 0;
@@ -29,8 +34,19 @@ public class RetryContext {
     private ChronoUnit jitterDelayUnit = ChronoUnit.MILLIS;
     private Class<? extends Throwable>[] retryOn = new Class[]{Exception.class};
     private Class<? extends Throwable>[] abortOn = new Class[0];
+    private ExceptionClassifier retryOnClassifier;
+    private ExceptionClassifier abortOnClassifier;
+    private boolean scheduled = true;
+    private Backoff backoff;
+    private RetryBudget budget;
     
-    public RetryContext(Retry r) {
+    /**
+     * @param r the retry annotation
+     * @param scheduled true if the attempts of asynchronous calls are scheduled instead of waited for
+     * @param backoff computes the delays between attempts
+     * @param budget if not null, the budget retries are taken from
+     */
+    public RetryContext(Retry r, boolean scheduled, Backoff backoff, RetryBudget budget) {
         this.maxRetries = r.maxRetries();
         this.delay = r.delay();
         this.delayUnit = r.delayUnit();
@@ -40,6 +56,11 @@ public class RetryContext {
         this.jitterDelayUnit = r.jitterDelayUnit();
         this.retryOn = r.retryOn();
         this.abortOn = r.abortOn();
+        this.retryOnClassifier = new ExceptionClassifier(retryOn);
+        this.abortOnClassifier = new ExceptionClassifier(abortOn);
+        this.scheduled = scheduled;
+        this.backoff = backoff;
+        this.budget = budget;
     }
 
     public int getMaxRetries() {
@@ -77,4 +98,48 @@ public class RetryContext {
     public Class<? extends Throwable>[] getAbortOn() {
         return abortOn;
     }
+
+    /**
+     * @param t a failure of an attempt
+     * @return true if the failure is an instance of one of the retryOn types
+     */
+    public boolean isRetryOn(Throwable t) {
+        return retryOnClassifier.matches(t);
+    }
+
+    /**
+     * @param t a failure of an attempt
+     * @return true if the failure is an instance of one of the abortOn types
+     */
+    public boolean isAbortOn(Throwable t) {
+        return abortOnClassifier.matches(t);
+    }
+
+    public Backoff getBackoff() {
+        return backoff;
+    }
+
+    public Optional<RetryBudget> getBudget() {
+        return Optional.ofNullable(budget);
+    }
+
+    /**
+     * Records a call that succeeded on its first attempt.
+     */
+    public void onFirstAttemptSuccess() {
+        if (budget != null) {
+            budget.onSuccess();
+        }
+    }
+
+    /**
+     * @return true if a retry can be done according to the retry budget, if any
+     */
+    public boolean acquireRetry() {
+        return budget == null || budget.tryRetry();
+    }
+
+    public boolean isScheduled() {
+        return scheduled;
+    }
 }
@@ -21,13 +21,33 @@ import java.time.temporal.ChronoUnit;
 public class TimeoutContext {
     private final long timeout;
     private final ChronoUnit timeoutUnit;
+    private final long timeoutInMillis;
+    private final boolean cooperative;
+    private final long interruptDelayInMillis;
 
-    public TimeoutContext(long timeout, ChronoUnit timeoutUnit) {
+    /**
+     * @param timeout the timeout value
+     * @param timeoutUnit the unit of the timeout value
+     * @param cooperative if true, the executing thread is not interrupted when the timeout is reached
+     * @param interruptDelayInMillis in cooperative mode, delay after the timeout at which the thread is interrupted anyway; negative for never
+     */
+    public TimeoutContext(long timeout, ChronoUnit timeoutUnit, boolean cooperative, long interruptDelayInMillis) {
         this.timeout = timeout;
         this.timeoutUnit = timeoutUnit;
+        this.timeoutInMillis = Duration.of(timeout, timeoutUnit).toMillis();
+        this.cooperative = cooperative;
+        this.interruptDelayInMillis = interruptDelayInMillis;
     }
     
     public long toMillis() {
-        return Duration.of(timeout, timeoutUnit).toMillis();
+        return timeoutInMillis;
+    }
+
+    public boolean isCooperative() {
+        return cooperative;
+    }
+
+    public long getInterruptDelayInMillis() {
+        return interruptDelayInMillis;
     }
 }
@@ -0,0 +1,30 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.fallback;
+
+/**
+ * Computes the key under which the result of a call is stored in a {@link FallbackCache}.
+ * 
+ * Implementations need a public no argument constructor, they are named by the {@code staleCacheKey} parameter of Fallback.
+ */
+@FunctionalInterface
+public interface CacheKeyExtractor {
+    /**
+     * @param parameters the parameters of the call
+     * @return the key of the call, that must implement equals and hashCode
+     */
+    Object keyOf(Object[] parameters);
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.fallback;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import fr.brouillard.oss.ee.fault.tolerance.misc.ParametersKey;
+
+/**
+ * Keeps the latest successful results of a method, by call key, to serve them when a later call with the same key fails.
+ * 
+ * The cache is bounded, the least recently used entries are evicted first, and entries older than the time to live
+ * are not served anymore.
+ */
+public class FallbackCache {
+    private static final ThreadLocal<Boolean> SERVED_STALE = new ThreadLocal<>();
+
+    private final long ttlInNanos;
+    private final CacheKeyExtractor keyExtractor;
+    private final LinkedHashMap<Object, FallbackCache.Entry> entries;
+    private final LongAdder staleServed = new LongAdder();
+
+    /**
+     * @param ttlInMillis the time, in milliseconds, during which a result can be served
+     * @param maxEntries the maximum number of results kept
+     * @param keyExtractor computes the keys of the calls, null to use the parameters themselves
+     */
+    public FallbackCache(long ttlInMillis, int maxEntries, CacheKeyExtractor keyExtractor) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive, got " + maxEntries);
+        }
+        this.ttlInNanos = TimeUnit.MILLISECONDS.toNanos(ttlInMillis);
+        this.keyExtractor = (keyExtractor != null) ? keyExtractor : ParametersKey::of;
+        this.entries = new LruEntries(maxEntries);
+    }
+
+    public Object keyOf(Object[] parameters) {
+        return keyExtractor.keyOf(parameters);
+    }
+
+    /**
+     * Records the successful result of a call.
+     */
+    public void put(Object key, Object value) {
+        Entry entry = new Entry(value, System.nanoTime());
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * @param key the key of a failed call
+     * @return the result to serve for the call, null if none was recorded or if it is too old
+     */
+    public Entry get(Object key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.storedAt > ttlInNanos) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            staleServed.increment();
+        }
+        return entry;
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the number of results served in place of a failure
+     */
+    public long getStaleServed() {
+        return staleServed.sum();
+    }
+
+    static void markServed(boolean stale) {
+        SERVED_STALE.set(stale);
+    }
+
+    /**
+     * @return true if the latest synchronous call, made by the current thread, to a method using a fallback cache was
+     * given a stale result from the cache
+     */
+    public static boolean lastServedStale() {
+        return Boolean.TRUE.equals(SERVED_STALE.get());
+    }
+
+    public static final class Entry {
+        private final Object value;
+        private final long storedAt;
+
+        Entry(Object value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * @return the age of the result, in milliseconds
+         */
+        public long getAgeInMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - storedAt);
+        }
+    }
+
+    /**
+     * Entries in access order, the least recently used one being evicted beyond the maximum size.
+     */
+    private static final class LruEntries extends LinkedHashMap<Object, FallbackCache.Entry> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        LruEntries(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, FallbackCache.Entry> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
@@ -15,28 +15,76 @@
  */
 package fr.brouillard.oss.ee.fault.tolerance.fallback;
 
-import javax.enterprise.inject.Any;
-import javax.enterprise.inject.Instance;
-import javax.enterprise.util.AnnotationLiteral;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import javax.interceptor.InvocationContext;
 
 import org.eclipse.microprofile.faulttolerance.FallbackHandler;
 
 import fr.brouillard.oss.ee.fault.tolerance.impl.ExecutionContextImpl;
 
+/**
+ * Calls the {@link FallbackHandler} declared by a {@link org.eclipse.microprofile.faulttolerance.Fallback} annotation.
+ * 
+ * The bean of each handler class is resolved once. Handlers of a normal scope, or singletons, are looked up once
+ * and reused; other handlers, typically dependent ones, are created for each fallback and destroyed afterwards.
+ */
+@ApplicationScoped
 public class FallbackHandlerInvoker {
     @Inject
-    Instance<FallbackHandler> fallbackHandlerBuilder;
-    
+    BeanManager beanManager;
+
+    private ConcurrentMap<Class<?>, ResolvedHandler> handlers;
+
+    @PostConstruct
+    public void initialize() {
+        handlers = new ConcurrentHashMap<>();
+    }
+
     public Object invoke(InvocationContext context, Class<? extends FallbackHandler<?>> fhClass) {
-        Instance<? extends FallbackHandler<?>> instance = fallbackHandlerBuilder.select(fhClass);
-        
-        if (instance.isUnsatisfied()) {
+        ResolvedHandler handler = handlers.get(fhClass);
+        if (handler == null) {
+            handler = handlers.computeIfAbsent(fhClass, this::resolve);
+        }
+        return handler.handle(new ExecutionContextImpl(context.getMethod(), context.getParameters()));
+    }
+
+    private ResolvedHandler resolve(Class<?> fhClass) {
+        Bean<?> bean = beanManager.resolve(beanManager.getBeans(fhClass));
+        if (bean == null) {
             throw new IllegalStateException("could not find a valid instance of " + fhClass.getName());
         }
-        
-        FallbackHandler<?> fallbackHandler = instance.get();
-        return fallbackHandler.handle(new ExecutionContextImpl(context.getMethod(), context.getParameters()));
+
+        if (beanManager.isNormalScope(bean.getScope()) || Singleton.class.equals(bean.getScope())) {
+            FallbackHandler<?> shared = reference(bean, fhClass, beanManager.createCreationalContext(bean));
+            return executionContext -> shared.handle(executionContext);
+        }
+
+        return executionContext -> {
+            CreationalContext<?> creationalContext = beanManager.createCreationalContext(bean);
+            try {
+                return reference(bean, fhClass, creationalContext).handle(executionContext);
+            } finally {
+                // destroys the dependent handler
+                creationalContext.release();
+            }
+        };
+    }
+
+    private FallbackHandler<?> reference(Bean<?> bean, Class<?> fhClass, CreationalContext<?> creationalContext) {
+        return (FallbackHandler<?>) beanManager.getReference(bean, fhClass, creationalContext);
+    }
+
+    @FunctionalInterface
+    private interface ResolvedHandler {
+        Object handle(ExecutionContextImpl executionContext);
     }
 }
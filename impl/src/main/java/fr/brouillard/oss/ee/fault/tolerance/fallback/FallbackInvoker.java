@@ -15,9 +15,8 @@
  */
 package fr.brouillard.oss.ee.fault.tolerance.fallback;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import javax.inject.Inject;
 import javax.interceptor.InvocationContext;
@@ -26,38 +25,88 @@ import org.eclipse.microprofile.faulttolerance.Fallback;
 import org.eclipse.microprofile.faulttolerance.exceptions.FaultToleranceDefinitionException;
 
 import fr.brouillard.oss.ee.fault.tolerance.config.AnnotationFinder;
+import fr.brouillard.oss.ee.fault.tolerance.config.Configurator;
 import fr.brouillard.oss.ee.fault.tolerance.impl.Invoker;
 import fr.brouillard.oss.ee.fault.tolerance.impl.InvokerChain;
+import fr.brouillard.oss.ee.fault.tolerance.misc.Stages;
 
 public class FallbackInvoker implements Invoker {
     @Inject
     FallbackHandlerInvoker fhInvoker;
+    @Inject
+    Configurator conf;
     
     @Override
     public Object invoke(InvocationContext context, InvokerChain chain) throws Exception {
+        Optional<FallbackCache> cache = conf.fallbackCache(context);
+        if (Stages.isStage(context.getMethod())) {
+            return invokeStage(context, chain, cache.orElse(null));
+        }
+        if (cache.isPresent()) {
+            return invokeCached(context, chain, cache.get());
+        }
+
         try {
             return chain.invoke(context);
         } catch (Exception ex) {
-            Optional<Fallback> optFallback = AnnotationFinder.find(context, Fallback.class).getAnnotation();
-            
-            if (optFallback.isPresent()) {
-                Fallback annotationFallback = optFallback.get();
-                if (Fallback.DEFAULT.class.getName().equals(annotationFallback.value().getName())) {
-                    String fallbackMethodName = annotationFallback.fallbackMethod();
-
-                    try {
-                        Method fallbackMethod = context.getTarget().getClass().getMethod(fallbackMethodName, context.getMethod().getParameterTypes());
-                        return  fallbackMethod.invoke(context.getTarget(), context.getParameters());
-                    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-                        throw new FaultToleranceDefinitionException(e);
-                    }
-                } else {
-                    // Invocation shall be done by the class defined on the Fallback annotation
-                    return fhInvoker.invoke(context, annotationFallback.value());
-                }
+            return fallback(context);
+        }
+    }
+
+    private Object invokeCached(InvocationContext context, InvokerChain chain, FallbackCache cache) throws Exception {
+        Object key = cache.keyOf(context.getParameters());
+        try {
+            Object result = chain.invoke(context);
+            cache.put(key, result);
+            FallbackCache.markServed(false);
+            return result;
+        } catch (Exception ex) {
+            FallbackCache.Entry entry = cache.get(key);
+            FallbackCache.markServed(entry != null);
+            return (entry != null) ? entry.getValue() : fallback(context);
+        }
+    }
+
+    private Object invokeStage(InvocationContext context, InvokerChain chain, FallbackCache cache) {
+        Object key = (cache != null) ? cache.keyOf(context.getParameters()) : null;
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        Stages.invoke(chain, context).whenComplete((r, t) -> {
+            if (t == null && cache != null) {
+                cache.put(key, r);
+            }
+            if (t == null || !(Stages.unwrap(t) instanceof Exception)) {
+                Stages.complete(result, r, t);
+                return;
+            }
+            // the stale flag is per thread, it is not available to callers of stage methods
+            FallbackCache.Entry entry = (cache != null) ? cache.get(key) : null;
+            if (entry != null) {
+                result.complete(entry.getValue());
+                return;
             }
+            try {
+                // the fallback of a stage method provides a stage
+                Stages.toFuture(fallback(context)).whenComplete((fr, ft) -> Stages.complete(result, fr, ft));
+            } catch (Throwable ft) {
+                result.completeExceptionally(ft);
+            }
+        });
+        return result;
+    }
 
-            throw new FaultToleranceDefinitionException("missing annotation @Fallback");
+    private Object fallback(InvocationContext context) throws Exception {
+        Optional<Fallback> optFallback = AnnotationFinder.find(context, Fallback.class).getAnnotation();
+        
+        if (optFallback.isPresent()) {
+            Fallback annotationFallback = optFallback.get();
+            if (FallbackMethods.usesFallbackMethod(annotationFallback)) {
+                return FallbackMethods.invoke(context.getTarget(), context.getMethod(), annotationFallback, context.getParameters());
+            } else {
+                // Invocation shall be done by the class defined on the Fallback annotation
+                return fhInvoker.invoke(context, annotationFallback.value());
+            }
         }
+
+        throw new FaultToleranceDefinitionException("missing annotation @Fallback");
     }
 }
@@ -0,0 +1,159 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.fallback;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.microprofile.faulttolerance.Fallback;
+import org.eclipse.microprofile.faulttolerance.exceptions.FaultToleranceDefinitionException;
+
+import fr.brouillard.oss.ee.fault.tolerance.config.AnnotationFinder;
+
+/**
+ * Holds, per class and guarded method, the compiled handle of the fallback method to call.
+ * 
+ * Handles are resolved at deployment by {@link #index(Class)}; subclasses of indexed classes, such as the ones generated
+ * by the container, reuse the handles of their indexed superclass. Other classes resolve their handles on the first
+ * fallback of a method. Calling a fallback method then requires no lookup.
+ */
+public class FallbackMethods {
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    /*
+     * Handles are attached to the Class objects themselves, like the resolutions of the AnnotationFinder.
+     */
+    private static final ClassValue<ConcurrentMap<Method, MethodHandle>> HANDLES = new ClassValue<ConcurrentMap<Method, MethodHandle>>() {
+        @Override
+        protected ConcurrentMap<Method, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private FallbackMethods() {
+    }
+
+    /**
+     * Resolves the fallback methods of all public methods of the given class.
+     * @param aClass the class to index
+     * @throws FaultToleranceDefinitionException if a fallback method is missing or does not return the type of its guarded method
+     */
+    public static void index(Class<?> aClass) {
+        for (Method m : aClass.getMethods()) {
+            AnnotationFinder.find(Fallback.class, aClass, m).getAnnotation()
+                    .filter(FallbackMethods::usesFallbackMethod)
+                    .ifPresent(f -> handle(aClass, m, f));
+        }
+    }
+
+    /**
+     * Drops all the handles previously stored for the given class.
+     * @param aClass the class to remove from the index
+     */
+    public static void evict(Class<?> aClass) {
+        HANDLES.remove(aClass);
+    }
+
+    /**
+     * @param fallback a fallback annotation
+     * @return true if the fallback is a method of the guarded class, false if it is a {@link org.eclipse.microprofile.faulttolerance.FallbackHandler}
+     */
+    public static boolean usesFallbackMethod(Fallback fallback) {
+        return fallback.value() == Fallback.DEFAULT.class;
+    }
+
+    /**
+     * Calls the fallback method of a guarded method, exceptions thrown by the fallback method are propagated as is.
+     * @param target the instance the guarded method was called on
+     * @param method the guarded method
+     * @param fallback the fallback annotation of the guarded method
+     * @param parameters the parameters the guarded method was called with
+     * @return the result of the fallback method
+     */
+    public static Object invoke(Object target, Method method, Fallback fallback, Object[] parameters) throws Exception {
+        MethodHandle handle = handle(target.getClass(), method, fallback);
+        try {
+            return (Object) handle.invokeExact(target, parameters);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+
+    private static MethodHandle handle(Class<?> aClass, Method method, Fallback fallback) {
+        ConcurrentMap<Method, MethodHandle> handlesByMethod = HANDLES.get(aClass);
+
+        // plain get first, computeIfAbsent would allocate a capturing lambda on each call
+        MethodHandle handle = handlesByMethod.get(method);
+        if (handle == null) {
+            handle = handlesByMethod.computeIfAbsent(method, m -> inherited(aClass, m, fallback).orElseGet(() -> resolve(aClass, m, fallback.fallbackMethod())));
+        }
+        return handle;
+    }
+
+    /**
+     * Instances of intercepted beans are usually of a subclass generated by the container, the handles indexed
+     * at deployment are then stored under one of its superclasses.
+     */
+    private static Optional<MethodHandle> inherited(Class<?> aClass, Method method, Fallback fallback) {
+        for (Class<?> c = aClass.getSuperclass(); c != null && c != Object.class; c = c.getSuperclass()) {
+            MethodHandle handle = HANDLES.get(c).get(method);
+            if (handle != null && fallback.equals(AnnotationFinder.find(Fallback.class, c, method).getAnnotation().orElse(null))) {
+                return Optional.of(handle);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static MethodHandle resolve(Class<?> aClass, Method method, String fallbackMethodName) {
+        Method fallbackMethod;
+        try {
+            fallbackMethod = aClass.getMethod(fallbackMethodName, method.getParameterTypes());
+        } catch (NoSuchMethodException e) {
+            throw new FaultToleranceDefinitionException(String.format("%s#%s uses unknown Fallback#fallbackMethod: %s"
+                    , aClass.getName()
+                    , method.getName()
+                    , fallbackMethodName
+            ), e);
+        }
+        if (!method.getReturnType().isAssignableFrom(fallbackMethod.getReturnType())) {
+            throw new FaultToleranceDefinitionException(String.format("%s#%s uses Fallback#fallbackMethod %s returning %s instead of %s"
+                    , aClass.getName()
+                    , method.getName()
+                    , fallbackMethodName
+                    , fallbackMethod.getReturnType().getName()
+                    , method.getReturnType().getName()
+            ));
+        }
+
+        try {
+            // the method is public but its class may not be
+            fallbackMethod.setAccessible(true);
+            return MethodHandles.lookup().unreflect(fallbackMethod)
+                    .asSpreader(Object[].class, fallbackMethod.getParameterCount())
+                    .asType(INVOKER_TYPE);
+        } catch (IllegalAccessException | SecurityException e) {
+            throw new FaultToleranceDefinitionException(e);
+        }
+    }
+}
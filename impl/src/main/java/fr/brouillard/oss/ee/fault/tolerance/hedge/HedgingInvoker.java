@@ -0,0 +1,263 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.hedge;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.interceptor.InvocationContext;
+
+import fr.brouillard.oss.ee.fault.tolerance.Hedge;
+import fr.brouillard.oss.ee.fault.tolerance.config.AnnotationFinder;
+import fr.brouillard.oss.ee.fault.tolerance.impl.Invoker;
+import fr.brouillard.oss.ee.fault.tolerance.impl.InvokerChain;
+import fr.brouillard.oss.ee.fault.tolerance.impl.TimeoutManager;
+import fr.brouillard.oss.ee.fault.tolerance.misc.CallContext;
+import fr.brouillard.oss.ee.fault.tolerance.misc.Cancellation;
+import fr.brouillard.oss.ee.fault.tolerance.misc.Stages;
+
+/**
+ * Hedges synchronous calls of methods annotated with {@link Hedge}.
+ * 
+ * Attempts run on the managed executor through the {@link TimeoutManager}, the calling thread only waits for the
+ * outcome of the call. If the first attempt has not ended when the hedging delay is reached, a second attempt is
+ * started. The attempt succeeding first wins and gives its latency to the hedging delay computation: the caller
+ * returns at once even if the other attempt is stuck, its thread is interrupted. When an attempt fails, the outcome
+ * of the other one is used.
+ * 
+ * Both attempts go on with the same {@link InvocationContext}: each {@link InvocationContext#proceed()} call hands
+ * over to the next interceptor of the container, so the hedged attempt neither re-enters the interceptors already
+ * run for the call nor invokes the target method reflectively.
+ */
+@ApplicationScoped
+public class HedgingInvoker implements Invoker {
+    @Inject
+    TimeoutManager tm;
+
+    private ConcurrentMap<Method, HedgeContext> contexts;
+
+    @PostConstruct
+    public void initialize() {
+        contexts = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public Object invoke(InvocationContext context, InvokerChain chain) throws Exception {
+        Method method = context.getMethod();
+        if (Stages.isStage(method) || Future.class.isAssignableFrom(method.getReturnType())) {
+            // asynchronous results are handed over immediately, there is nothing to hedge
+            return chain.invoke(context);
+        }
+
+        HedgeContext hedge = contexts.get(method);
+        if (hedge == null) {
+            hedge = contexts.computeIfAbsent(method, m -> new HedgeContext(AnnotationFinder.find(context, Hedge.class).getAnnotation().get()));
+        }
+
+        Attempts attempts = new Attempts(hedge, chain, context);
+        CallContext trigger = tm.schedule(hedge.delayInMillis(), () -> attempts.run(attempts.hedged));
+        try {
+            tm.execute(() -> attempts.run(attempts.primary));
+            return attempts.await();
+        } finally {
+            tm.cancel(trigger);
+            // no effect once settled, otherwise the caller gave up waiting
+            attempts.cancel();
+        }
+    }
+
+    /**
+     * @param method a method annotated with {@link Hedge}
+     * @return the number of hedged attempts started for the method
+     */
+    public long getHedgedAttempts(Method method) {
+        HedgeContext hedge = contexts.get(method);
+        return (hedge != null) ? hedge.hedged.sum() : 0;
+    }
+
+    /**
+     * @param method a method annotated with {@link Hedge}
+     * @return the number of calls whose result was given by the hedged attempt
+     */
+    public long getHedgeWins(Method method) {
+        HedgeContext hedge = contexts.get(method);
+        return (hedge != null) ? hedge.wins.sum() : 0;
+    }
+
+    private static class HedgeContext {
+        private final LatencyRecorder latencies;
+        private final long defaultDelayInMillis;
+        private final LongAdder hedged = new LongAdder();
+        private final LongAdder wins = new LongAdder();
+
+        HedgeContext(Hedge hedge) {
+            this.latencies = new LatencyRecorder(hedge.percentile());
+            this.defaultDelayInMillis = Duration.of(hedge.delay(), hedge.delayUnit()).toMillis();
+        }
+
+        long delayInMillis() {
+            long percentile = latencies.getPercentileInNanos();
+            return (percentile >= 0) ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(percentile)) : defaultDelayInMillis;
+        }
+    }
+
+    /**
+     * Coordinates the two attempts of a call, state changes and interruptions are done under the instance lock
+     * so that an interruption never leaks out of an attempt.
+     */
+    private static class Attempts {
+        private static final int PENDING = 0;
+        private static final int PRIMARY = 1;
+        private static final int HEDGED = 2;
+        private static final int CANCELLED = 3;
+
+        private final HedgeContext hedge;
+        private final InvokerChain chain;
+        private final InvocationContext context;
+        private final Attempt primary = new Attempt(PRIMARY);
+        private final Attempt hedged = new Attempt(HEDGED);
+        // the attempt giving the outcome of the call, written under the instance lock, read without it by the attempts
+        private volatile int outcome = PENDING;
+        private Object result;
+
+        Attempts(HedgeContext hedge, InvokerChain chain, InvocationContext context) {
+            this.hedge = hedge;
+            this.chain = chain;
+            this.context = context;
+        }
+
+        void run(Attempt attempt) {
+            synchronized (this) {
+                if (outcome != PENDING) {
+                    return;
+                }
+                attempt.thread = Thread.currentThread();
+                attempt.started = true;
+            }
+            if (attempt == hedged) {
+                hedge.hedged.increment();
+            }
+
+            long start = System.nanoTime();
+            Object value = null;
+            Throwable failure = null;
+            BooleanSupplier previous = Cancellation.publish(() -> isAbandoned(attempt));
+            try {
+                value = chain.invoke(context);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                Cancellation.restore(previous);
+            }
+
+            synchronized (this) {
+                if (attempt.thread == null) {
+                    // cancelled, clear its interruption
+                    Thread.interrupted();
+                }
+                attempt.thread = null;
+                attempt.ended = true;
+                attempt.failure = failure;
+                if (outcome == PENDING) {
+                    if (failure == null) {
+                        result = value;
+                        settle(attempt);
+                        hedge.latencies.record(System.nanoTime() - start);
+                        if (attempt == hedged) {
+                            hedge.wins.increment();
+                        }
+                    } else if (primary.ended && (hedged.ended || !hedged.started)) {
+                        // no attempt is left to succeed, the failure of the primary attempt is the outcome
+                        settle(primary);
+                    }
+                }
+                notifyAll();
+            }
+        }
+
+        private boolean isAbandoned(Attempt attempt) {
+            int current = outcome;
+            return current != PENDING && current != attempt.id;
+        }
+
+        private void settle(Attempt attempt) {
+            outcome = attempt.id;
+            (attempt == primary ? hedged : primary).cancel();
+        }
+
+        /**
+         * Waits for the outcome of the call.
+         * @return the result of the first successful attempt
+         * @throws Exception the failure of the primary attempt if no attempt succeeded
+         */
+        synchronized Object await() throws Exception {
+            while (outcome == PENDING) {
+                wait();
+            }
+            Throwable failure = (outcome == PRIMARY) ? primary.failure : null;
+            if (failure == null) {
+                return result;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (failure instanceof Exception) {
+                throw (Exception) failure;
+            }
+            throw new UndeclaredThrowableException(failure);
+        }
+
+        /**
+         * Cancels the running attempts if the call has no outcome yet.
+         */
+        synchronized void cancel() {
+            if (outcome == PENDING) {
+                outcome = CANCELLED;
+                primary.cancel();
+                hedged.cancel();
+            }
+        }
+    }
+
+    private static class Attempt {
+        private final int id;
+        private Thread thread;
+        private boolean started;
+        private boolean ended;
+        private Throwable failure;
+
+        Attempt(int id) {
+            this.id = id;
+        }
+
+        private void cancel() {
+            if (thread != null) {
+                thread.interrupt();
+                thread = null;
+            }
+        }
+    }
+}
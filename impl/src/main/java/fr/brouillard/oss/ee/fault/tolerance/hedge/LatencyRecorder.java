@@ -0,0 +1,71 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.hedge;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the latest latencies of a method and a percentile of them.
+ * 
+ * Recording is a slot write in a ring buffer; the percentile is only computed again every {@link #RECOMPUTE_EVERY}
+ * samples, by the thread recording the sample.
+ */
+public class LatencyRecorder {
+    static final int SAMPLES = 128;
+    static final int RECOMPUTE_EVERY = 16;
+
+    private final double percentile;
+    private final AtomicLongArray samples = new AtomicLongArray(SAMPLES);
+    private final AtomicLong recorded = new AtomicLong();
+    private volatile long percentileInNanos = -1;
+
+    /**
+     * @param percentile the percentile to compute, in ]0, 100]
+     */
+    public LatencyRecorder(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be in ]0, 100], got " + percentile);
+        }
+        this.percentile = percentile;
+    }
+
+    public void record(long latencyInNanos) {
+        long count = recorded.getAndIncrement();
+        samples.set((int) (count % SAMPLES), latencyInNanos);
+        if ((count + 1) % RECOMPUTE_EVERY == 0 && count + 1 >= SAMPLES / 4) {
+            percentileInNanos = compute(Math.min(count + 1, SAMPLES));
+        }
+    }
+
+    private long compute(long count) {
+        long[] sorted = new long[(int) count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * count) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    /**
+     * @return the percentile of the latest latencies, -1 while not enough latencies were recorded
+     */
+    public long getPercentileInNanos() {
+        return percentileInNanos;
+    }
+}
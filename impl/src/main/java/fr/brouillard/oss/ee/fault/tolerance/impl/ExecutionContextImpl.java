@@ -22,12 +22,11 @@ import org.eclipse.microprofile.faulttolerance.ExecutionContext;
 public class ExecutionContextImpl implements ExecutionContext {
     private final Method failedCallee;
     private final Object[] params;
-    private final String identifier;
+    private String identifier;
 
     public ExecutionContextImpl(Method failed, Object[] params) {
         this.failedCallee = failed;
         this.params = params;
-        this.identifier = String.format("%s#%s", failed.getDeclaringClass().getName(), failed.getName());
     }
 
     @Override
@@ -41,6 +40,12 @@ public class ExecutionContextImpl implements ExecutionContext {
     }
 
     public String getIdentifier() {
-        return identifier;
+        // computed on demand, most contexts are never asked for it
+        String id = identifier;
+        if (id == null) {
+            id = failedCallee.getDeclaringClass().getName() + "#" + failedCallee.getName();
+            identifier = id;
+        }
+        return id;
     }
 }
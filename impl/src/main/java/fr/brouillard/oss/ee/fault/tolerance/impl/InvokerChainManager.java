@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.impl;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.interceptor.InvocationContext;
+
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Fallback;
+import org.eclipse.microprofile.faulttolerance.Retry;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.brouillard.oss.ee.fault.tolerance.Hedge;
+import fr.brouillard.oss.ee.fault.tolerance.RateLimit;
+import fr.brouillard.oss.ee.fault.tolerance.SingleFlight;
+import fr.brouillard.oss.ee.fault.tolerance.bulkhead.BulkheadInvoker;
+import fr.brouillard.oss.ee.fault.tolerance.circuit_breaker.CircuitBreakerInvoker;
+import fr.brouillard.oss.ee.fault.tolerance.config.AnnotationFinder;
+import fr.brouillard.oss.ee.fault.tolerance.fallback.FallbackInvoker;
+import fr.brouillard.oss.ee.fault.tolerance.hedge.HedgingInvoker;
+import fr.brouillard.oss.ee.fault.tolerance.rate_limit.RateLimitInvoker;
+import fr.brouillard.oss.ee.fault.tolerance.retry.RetryInvoker;
+import fr.brouillard.oss.ee.fault.tolerance.single_flight.SingleFlightInvoker;
+import fr.brouillard.oss.ee.fault.tolerance.timeout.TimeoutInvoker;
+
+/**
+ * Holds, per intercepted class and method, the prebuilt {@link InvokerChain} to use.
+ * Annotations are resolved only once, on the first call of a method; afterwards the interceptor
+ * only performs two map lookups to retrieve an immutable chain.
+ */
+@ApplicationScoped
+public class InvokerChainManager {
+    private final static Logger LOGGER = LoggerFactory.getLogger(InvokerChainManager.class);
+
+    @Inject
+    TimeoutInvoker timeoutInvoker;
+    @Inject
+    CircuitBreakerInvoker circuitBreakerInvoker;
+    @Inject
+    RetryInvoker retryInvoker;
+    @Inject
+    FallbackInvoker fallbackInvoker;
+    @Inject
+    BulkheadInvoker bulkheadInvoker;
+    @Inject
+    HedgingInvoker hedgingInvoker;
+    @Inject
+    RateLimitInvoker rateLimitInvoker;
+    @Inject
+    SingleFlightInvoker singleFlightInvoker;
+
+    private ConcurrentMap<Class<?>, ConcurrentMap<Method, InvokerChain>> chainsByClass;
+
+    @PostConstruct
+    public void initialize() {
+        chainsByClass = new ConcurrentHashMap<>();
+    }
+
+    public InvokerChain forContext(InvocationContext ic) {
+        Class<?> targetClass = ic.getTarget().getClass();
+        Method method = ic.getMethod();
+
+        // plain get first, computeIfAbsent would allocate a capturing lambda on each call
+        ConcurrentMap<Method, InvokerChain> chainsByMethod = chainsByClass.get(targetClass);
+        if (chainsByMethod == null) {
+            chainsByMethod = chainsByClass.computeIfAbsent(targetClass, c -> new ConcurrentHashMap<>());
+        }
+
+        InvokerChain chain = chainsByMethod.get(method);
+        if (chain == null) {
+            chain = chainsByMethod.computeIfAbsent(method, m -> build(targetClass, m));
+        }
+        return chain;
+    }
+
+    private InvokerChain build(Class<?> targetClass, Method method) {
+        InvokerChain chain = Chains.end();
+
+        if (AnnotationFinder.find(Timeout.class, targetClass, method).getAnnotation().isPresent()) {
+            chain = Chains.decorate(timeoutInvoker, chain);
+        }
+        if (AnnotationFinder.find(Bulkhead.class, targetClass, method).getAnnotation().isPresent()) {
+            chain = Chains.decorate(bulkheadInvoker, chain);
+        }
+        if (AnnotationFinder.find(CircuitBreaker.class, targetClass, method).getAnnotation().isPresent()) {
+            chain = Chains.decorate(circuitBreakerInvoker, chain);
+        }
+        if (AnnotationFinder.find(RateLimit.class, targetClass, method).getAnnotation().isPresent()) {
+            // outside the circuit breaker, rejected calls are not failures of the guarded method
+            chain = Chains.decorate(rateLimitInvoker, chain);
+        }
+        if (AnnotationFinder.find(Hedge.class, targetClass, method).getAnnotation().isPresent()) {
+            chain = Chains.decorate(hedgingInvoker, chain);
+        }
+        if (AnnotationFinder.find(Retry.class, targetClass, method).getAnnotation().isPresent()) {
+            chain = Chains.decorate(retryInvoker, chain);
+        }
+        if (AnnotationFinder.find(SingleFlight.class, targetClass, method).getAnnotation().isPresent()) {
+            chain = Chains.decorate(singleFlightInvoker, chain);
+        }
+        if (AnnotationFinder.find(Fallback.class, targetClass, method).getAnnotation().isPresent()) {
+            chain = Chains.decorate(fallbackInvoker, chain);
+        }
+
+        LOGGER.debug("built invoker chain for {}#{}", targetClass.getName(), method.getName());
+        return chain;
+    }
+}
@@ -19,35 +19,68 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.ejb.*;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.concurrent.ManagedThreadFactory;
 import java.io.Serializable;
-import java.lang.ref.WeakReference;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import fr.brouillard.oss.ee.fault.tolerance.config.Globals;
 import fr.brouillard.oss.ee.fault.tolerance.misc.CallContext;
 
+/**
+ * Fires the timeouts of guarded calls.
+ * 
+ * By default timeouts are handled in process by a {@link TimeoutWheel} driven by a thread of the container
+ * {@link ManagedThreadFactory}. EJB timers are used instead when the {@link Globals#FT_TIMEOUT_EJB_TIMER} system
+ * property is set to true or when no {@link ManagedThreadFactory} is available.
+ */
 @Singleton
 @TransactionManagement(TransactionManagementType.BEAN)
 @ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class TimeoutManager {
     private final static Logger LOGGER = LoggerFactory.getLogger(TimeoutManager.class);
+    private final static int TICKS_PER_WHEEL = 512;
     
     @Resource
     TimerService timerService;
 
-    private ConcurrentMap<String, TimeoutHandler> timeoutThreads;
+    @Resource
+    ManagedThreadFactory threadFactory;
+
+    @Resource
+    ManagedExecutorService executor;
+
+    private TimeoutWheel wheel;
+
+    // only used with EJB timers, to retrieve the call from the timer info
+    private AtomicLong timerIds;
+    private ConcurrentMap<Long, EJBCallContext> timedCalls;
 
     @PostConstruct
     public void initialize() {
-        timeoutThreads = new ConcurrentHashMap<>();
+        timerIds = new AtomicLong();
+        timedCalls = new ConcurrentHashMap<>();
+
+        if (!Boolean.getBoolean(Globals.FT_TIMEOUT_EJB_TIMER) && threadFactory != null) {
+            long tick = Long.getLong(Globals.FT_TIMEOUT_WHEEL_TICK, Globals.DEFAULT_TIMEOUT_WHEEL_TICK);
+            wheel = new TimeoutWheel(tick, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+            threadFactory.newThread(wheel).start();
+        } else {
+            LOGGER.info("timeouts are handled using EJB timers");
+        }
     }
     
     @PreDestroy
     public void cleanup() {
+        if (wheel != null) {
+            wheel.stop();
+        }
         timerService.getAllTimers().stream().forEach(t -> {
             try {
                 t.cancel();
@@ -57,20 +90,67 @@ public class TimeoutManager {
         });
     }
 
-    public CallContext register(String uuid, long timeoutDelayInMillis, Thread executingThread) {
-        LOGGER.debug("for key[{}], registering a timeout of {}ms for thread [{}]", uuid, timeoutDelayInMillis, executingThread.getName());
+    /**
+     * Registers a timeout for a call executed by the given thread.
+     * @param timeoutDelayInMillis the delay after which the call times out
+     * @param executingThread the thread executing the call
+     * @return the handle of the call, to be given back to {@link #cancel(CallContext)} once the call ends
+     */
+    public CallContext register(long timeoutDelayInMillis, Thread executingThread) {
+        return register(timeoutDelayInMillis, executingThread, true);
+    }
 
-        CallContext callContext = new CallContext();
-        
-        timeoutThreads.compute(uuid, (key, oldTH) -> {
-            if (oldTH != null) {
-                LOGGER.warn("an existing TimerHandler was found under key::{}", uuid);
-            }
-            TimerConfig tc = new TimerConfig(uuid, false);
-            timerService.createSingleActionTimer(timeoutDelayInMillis, tc);
-            return new TimeoutHandler(executingThread, callContext);
-        });
-        
+    /**
+     * Registers a timeout for a call executed by the given thread.
+     * @param timeoutDelayInMillis the delay after which the call times out
+     * @param executingThread the thread executing the call
+     * @param interruptOnTimeout false to only flag the call when the timeout is reached, without interrupting the thread
+     * @return the handle of the call, to be given back to {@link #cancel(CallContext)} once the call ends
+     */
+    public CallContext register(long timeoutDelayInMillis, Thread executingThread, boolean interruptOnTimeout) {
+        return register(timeoutDelayInMillis, executingThread, interruptOnTimeout, null);
+    }
+
+    /**
+     * Schedules a task, without holding any thread until its execution.
+     * 
+     * The task is executed by the container {@link ManagedExecutorService}, it is not executed if the returned
+     * handle is cancelled before the delay is reached.
+     * @param delayInMillis the delay after which the task is executed
+     * @param task the task to execute
+     * @return the handle of the task, to be given to {@link #cancel(CallContext)} to cancel the task
+     */
+    public CallContext schedule(long delayInMillis, Runnable task) {
+        return register(delayInMillis, null, false, () -> execute(task));
+    }
+
+    /**
+     * Executes a task on the container {@link ManagedExecutorService}, or on the calling thread when none is available.
+     * @param task the task to execute
+     */
+    public void execute(Runnable task) {
+        if (executor != null) {
+            executor.execute(task);
+        } else {
+            task.run();
+        }
+    }
+
+    private CallContext register(long timeoutDelayInMillis, Thread executingThread, boolean interruptOnTimeout, Runnable onTimeout) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutDelayInMillis);
+
+        if (wheel != null) {
+            CallContext callContext = new CallContext(executingThread, deadline, interruptOnTimeout, onTimeout);
+            wheel.schedule(callContext, timeoutDelayInMillis, TimeUnit.MILLISECONDS);
+            return callContext;
+        }
+
+        Long id = timerIds.incrementAndGet();
+        LOGGER.debug("for key[{}], registering a timeout of {}ms", id, timeoutDelayInMillis);
+
+        EJBCallContext callContext = new EJBCallContext(id, executingThread, deadline, interruptOnTimeout, onTimeout);
+        timedCalls.put(id, callContext);
+        callContext.timer = timerService.createSingleActionTimer(timeoutDelayInMillis, new TimerConfig(id, false));
         return callContext;
     }
 
@@ -79,64 +159,46 @@ public class TimeoutManager {
         try {
             Serializable timerInfo = timer.getInfo();
             
-            if (timerInfo instanceof String) {
-                String uuid = (String) timerInfo;
-                LOGGER.debug("timeout reached for key[{}]", uuid);
-                TimeoutHandler th = timeoutThreads.remove(uuid);
-                th.timeout();
+            if (timerInfo instanceof Long) {
+                LOGGER.debug("timeout reached for key[{}]", timerInfo);
+                EJBCallContext callContext = timedCalls.remove(timerInfo);
+                if (callContext != null) {
+                    ((TimeoutWheel.Entry) callContext).fire();
+                }
             }
         } catch (Exception ex) {
             LOGGER.debug("unexpected exception while firing timeout", ex);
         }
     }
 
-    public void cancelTimerByUUID(String uuid) {
-        if (timeoutThreads.remove(uuid) != null) {
+    /**
+     * Cancels the timeout of a call.
+     * @param callContext the handle returned by {@link #register(long, Thread)}
+     * @return true if the timeout was cancelled, false if it was already reached
+     */
+    public boolean cancel(CallContext callContext) {
+        boolean cancelled = callContext.cancel();
+
+        if (cancelled && callContext instanceof EJBCallContext) {
+            EJBCallContext ejbCallContext = (EJBCallContext) callContext;
+            timedCalls.remove(ejbCallContext.id);
             try {
-                timerService.getTimers().stream().filter(t -> uuid.equals(t.getInfo())).findFirst().ifPresent(Timer::cancel);
+                ejbCallContext.timer.cancel();
             } catch (Exception ex) {
-                LOGGER.debug("unexpected exception while accessing EJB timer for key[{}]", uuid, ex);
+                LOGGER.debug("unexpected exception while accessing EJB timer for key[{}]", ejbCallContext.id, ex);
             }
-            LOGGER.debug("timer cancelled for key[{}]", uuid);
-        } else {
-            LOGGER.trace("timer for key[{}] was already cancelled", uuid);
+            LOGGER.debug("timer cancelled for key[{}]", ejbCallContext.id);
         }
+        return cancelled;
     }
 
-    public boolean hasReachedTimeout(String uuid) {
-        TimeoutHandler th = timeoutThreads.get(uuid);
-        return (th!=null)?th.hasReachedTimeout():true;
-    }
-
-    private class TimeoutHandler {
-        private AtomicBoolean timeoutReached = new AtomicBoolean(false);
-        private WeakReference<Thread> executingThread;
-        private CallContext callContext;
-
-        public TimeoutHandler(Thread t, CallContext callContext) {
-            this.executingThread = new WeakReference<Thread>(t);
-            this.callContext = callContext;
-        }
-
-        public void timeout() {
-            timeoutReached.set(true);
-            if (callContext != null) {
-                // TODO remove end of refactoring
-                callContext.setTimeout();
-            }
-            Thread t = executingThread.get();
-            if (t != null) {
-                LOGGER.debug("timeout reached, interrupting thread[{}]", t.getName());
-                synchronized (t) {
-                    t.interrupt();
-                }
-            } else {
-                LOGGER.trace("timeout reached but thread has gone");
-            }
-        }
+    private static class EJBCallContext extends CallContext {
+        private final Long id;
+        private volatile Timer timer;
 
-        public boolean hasReachedTimeout() {
-            return timeoutReached.get();
+        EJBCallContext(Long id, Thread executingThread, long deadline, boolean interruptOnTimeout, Runnable onTimeout) {
+            super(executingThread, deadline, interruptOnTimeout, onTimeout);
+            this.id = id;
         }
     }
 }
@@ -0,0 +1,230 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timing wheel firing timeouts from a single worker thread.
+ * 
+ * Scheduling only enqueues the entry, cancelling is a single CAS on the entry state: both are O(1) and do not
+ * involve the worker thread. The worker moves newly scheduled entries into the wheel buckets, drops the cancelled
+ * ones it meets and expires the others once their deadline is reached, with a precision of one tick.
+ * 
+ * The wheel is a {@link Runnable} to be executed by the thread driving it, it returns once {@link #stop()} is called.
+ */
+public class TimeoutWheel implements Runnable {
+    private final static Logger LOGGER = LoggerFactory.getLogger(TimeoutWheel.class);
+
+    private final long tickDuration;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final Queue<Entry> scheduled = new ConcurrentLinkedQueue<>();
+    private final long startTime;
+
+    private volatile boolean running = true;
+    private volatile Thread worker;
+    private long tick;
+
+    /**
+     * @param tickDuration the duration of a tick, i.e. the precision of the timeouts
+     * @param unit the unit of the tick duration
+     * @param ticksPerWheel the number of buckets of the wheel, rounded to the next power of two
+     */
+    public TimeoutWheel(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tick duration must be > 0");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("ticks per wheel must be in ]0, 2^30]");
+        }
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        size = Math.max(1, size);
+
+        this.tickDuration = unit.toNanos(tickDuration);
+        this.mask = size - 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Schedules the expiration of the given entry.
+     * @param entry the entry to expire, it must not have been scheduled already
+     * @param delay the delay after which the entry expires
+     * @param unit the unit of the delay
+     */
+    public void schedule(Entry entry, long delay, TimeUnit unit) {
+        entry.deadline = System.nanoTime() - startTime + unit.toNanos(delay);
+        scheduled.add(entry);
+    }
+
+    public void stop() {
+        running = false;
+        Thread t = worker;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    @Override
+    public void run() {
+        worker = Thread.currentThread();
+        LOGGER.debug("timeout wheel started on thread[{}]", worker.getName());
+
+        while (running) {
+            long deadline = tickDuration * (tick + 1);
+            long sleepTime = deadline - (System.nanoTime() - startTime);
+
+            if (sleepTime > 0) {
+                LockSupport.parkNanos(this, sleepTime);
+                continue;
+            }
+
+            transferScheduled();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+
+        LOGGER.debug("timeout wheel stopped");
+    }
+
+    private void transferScheduled() {
+        Entry entry;
+        while ((entry = scheduled.poll()) != null) {
+            if (entry.isCancelled()) {
+                continue;
+            }
+            long calculated = entry.deadline / tickDuration;
+            entry.remainingRounds = (calculated - tick) / wheel.length;
+
+            // deadlines already passed are handled on the current tick
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(entry);
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        Entry entry = bucket.head;
+        while (entry != null) {
+            Entry next = entry.next;
+            if (entry.isCancelled()) {
+                bucket.remove(entry);
+            } else if (entry.remainingRounds <= 0) {
+                bucket.remove(entry);
+                entry.fire();
+            } else {
+                entry.remainingRounds--;
+            }
+            entry = next;
+        }
+    }
+
+    /**
+     * An entry of the wheel, it acts as the handle of a scheduled timeout.
+     */
+    public abstract static class Entry {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Entry> STATE = AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+        private volatile int state = PENDING;
+
+        // accessed only by the thread driving the wheel, once scheduled
+        private long deadline;
+        private long remainingRounds;
+        private Entry next;
+        private Entry prev;
+
+        /**
+         * Cancels the entry if it did not expire yet.
+         * @return true if the entry was cancelled by this call
+         */
+        public boolean cancel() {
+            return STATE.compareAndSet(this, PENDING, CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        /*
+         * Expires the entry unless it was cancelled, available in package for alternate timers.
+         */
+        void fire() {
+            if (STATE.compareAndSet(this, PENDING, EXPIRED)) {
+                try {
+                    expire();
+                } catch (Throwable t) {
+                    LOGGER.warn("unexpected exception while expiring timeout", t);
+                }
+            }
+        }
+
+        /**
+         * Called from the wheel thread when the entry expires; implementations must return quickly.
+         */
+        protected abstract void expire();
+    }
+
+    /*
+     * Doubly linked list of entries, only used from the thread driving the wheel.
+     */
+    private static class Bucket {
+        private Entry head;
+        private Entry tail;
+
+        private void add(Entry entry) {
+            entry.next = null;
+            entry.prev = tail;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+            }
+            tail = entry;
+        }
+
+        private void remove(Entry entry) {
+            if (entry.prev != null) {
+                entry.prev.next = entry.next;
+            } else {
+                head = entry.next;
+            }
+            if (entry.next != null) {
+                entry.next.prev = entry.prev;
+            } else {
+                tail = entry.prev;
+            }
+            entry.next = null;
+            entry.prev = null;
+        }
+    }
+}
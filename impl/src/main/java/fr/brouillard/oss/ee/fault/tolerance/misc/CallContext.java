@@ -15,20 +15,111 @@
  */
 package fr.brouillard.oss.ee.fault.tolerance.misc;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
 
-public class CallContext {
-    private AtomicBoolean timeout = new AtomicBoolean(false);
+import fr.brouillard.oss.ee.fault.tolerance.impl.TimeoutWheel;
 
-    public void setTimeout() {
-        timeout.set(true);
+/**
+ * Handle of a guarded call registered for a timeout.
+ * 
+ * Its state is the single source of truth shared by the calling thread and the thread firing timeouts:
+ * cancelling it is a CAS that only succeeds if the timeout was not reached yet.
+ * 
+ * While the call executes, the handle is published on the executing thread so that the remaining time budget
+ * can be queried, see {@link fr.brouillard.oss.ee.fault.tolerance.TimeoutBudget}.
+ */
+public class CallContext extends TimeoutWheel.Entry {
+    private final static ThreadLocal<CallContext> CURRENT = new ThreadLocal<>();
+
+    private final Thread executingThread;
+    private final long deadline;
+    private final boolean interruptOnTimeout;
+    private final Runnable onTimeout;
+    private CallContext outer;
+
+    public CallContext(Thread executingThread) {
+        this(executingThread, Long.MAX_VALUE, true);
+    }
+
+    /**
+     * @param executingThread the thread executing the call
+     * @param deadline the {@link System#nanoTime()} based deadline of the call
+     * @param interruptOnTimeout true if the executing thread has to be interrupted when the timeout is reached
+     */
+    public CallContext(Thread executingThread, long deadline, boolean interruptOnTimeout) {
+        this(executingThread, deadline, interruptOnTimeout, null);
     }
 
-    public void clearTimeout() {
-        timeout.set(false);
+    /**
+     * @param executingThread the thread executing the call, null for calls not bound to a thread
+     * @param deadline the {@link System#nanoTime()} based deadline of the call
+     * @param interruptOnTimeout true if the executing thread has to be interrupted when the timeout is reached
+     * @param onTimeout if not null, executed when the timeout is reached
+     */
+    public CallContext(Thread executingThread, long deadline, boolean interruptOnTimeout, Runnable onTimeout) {
+        this.executingThread = executingThread;
+        this.deadline = deadline;
+        this.interruptOnTimeout = interruptOnTimeout;
+        this.onTimeout = onTimeout;
     }
-    
+
     public boolean wasTimeoutReached() {
-        return  timeout.get();
+        return isExpired();
+    }
+
+    public Thread getExecutingThread() {
+        return executingThread;
+    }
+
+    /**
+     * Gives the time left before the deadline of this call or of an enclosing guarded call, whichever comes first.
+     * @param unit the unit of the returned value
+     * @return the remaining time, negative or 0 if the deadline is passed
+     */
+    public long remaining(TimeUnit unit) {
+        long earliest = deadline;
+        for (CallContext c = outer; c != null; c = c.outer) {
+            earliest = Math.min(earliest, c.deadline);
+        }
+        if (earliest == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(earliest - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Publishes this call as the current one of the calling thread.
+     * @return the previously published call, to be given back to {@link #restore(CallContext)}
+     */
+    public CallContext publish() {
+        CallContext previous = CURRENT.get();
+        this.outer = previous;
+        CURRENT.set(this);
+        return previous;
+    }
+
+    public static void restore(CallContext previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @return the guarded call currently executed by the calling thread, null if none
+     */
+    public static CallContext current() {
+        return CURRENT.get();
+    }
+
+    @Override
+    protected void expire() {
+        if (interruptOnTimeout && executingThread != null) {
+            executingThread.interrupt();
+        }
+        if (onTimeout != null) {
+            onTimeout.run();
+        }
     }
 }
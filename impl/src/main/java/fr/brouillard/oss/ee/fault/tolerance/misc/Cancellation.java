@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.misc;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Tells the invokers executing on a thread if the call they guard has been abandoned, for example the losing
+ * attempt of a hedged call. The failure of an abandoned call is caused by its cancellation, not by the guarded method.
+ */
+public final class Cancellation {
+    private static final ThreadLocal<BooleanSupplier> CURRENT = new ThreadLocal<>();
+
+    private Cancellation() {
+    }
+
+    /**
+     * Publishes on the current thread how to know if the executing call is abandoned.
+     * @param abandoned tells if the call is abandoned
+     * @return the previously published supplier, to be given back to {@link #restore(BooleanSupplier)}
+     */
+    public static BooleanSupplier publish(BooleanSupplier abandoned) {
+        BooleanSupplier previous = CURRENT.get();
+        CURRENT.set(abandoned);
+        return previous;
+    }
+
+    public static void restore(BooleanSupplier previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @return true if the call executing on the current thread is abandoned
+     */
+    public static boolean isCancelled() {
+        BooleanSupplier abandoned = CURRENT.get();
+        return abandoned != null && abandoned.getAsBoolean();
+    }
+}
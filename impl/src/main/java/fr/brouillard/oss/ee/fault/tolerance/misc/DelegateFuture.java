@@ -15,6 +15,9 @@
  */
 package fr.brouillard.oss.ee.fault.tolerance.misc;
 
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -22,14 +25,28 @@ import java.util.concurrent.TimeoutException;
 
 public class DelegateFuture<T> implements Future<T> {
     private final Future<Future<T>> delegate;
+    private final Future<?> task;
 
     public DelegateFuture(Future<Future<T>> delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * @param delegate completed with the future returned by the asynchronous call
+     * @param task the task executing the call, cancelled with this future
+     */
+    public DelegateFuture(Future<Future<T>> delegate, Future<?> task) {
         this.delegate = delegate;
+        this.task = task;
     }
     
     @Override
     public boolean cancel(boolean mayInterruptIfRunning) {
-        return delegate.cancel(mayInterruptIfRunning);
+        boolean cancelled = delegate.cancel(mayInterruptIfRunning);
+        if (task != null) {
+            task.cancel(mayInterruptIfRunning);
+        }
+        return cancelled;
     }
 
     @Override
@@ -51,4 +68,36 @@ public class DelegateFuture<T> implements Future<T> {
     public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
         return delegate.get().get(timeout, unit);
     }
+
+    /**
+     * Gives a stage completed with the outcome of the asynchronous call, it can be observed without blocking
+     * only when the call completion is itself observable.
+     * @return the outcome of the call, empty if it cannot be observed without blocking
+     */
+    @SuppressWarnings("unchecked")
+    public Optional<CompletableFuture<Object>> toCompletableFuture() {
+        if (!(delegate instanceof CompletableFuture)) {
+            return Optional.empty();
+        }
+
+        CompletableFuture<Object> outcome = new CompletableFuture<>();
+        ((CompletableFuture<Future<T>>) delegate).whenComplete((future, t) -> {
+            if (t != null) {
+                outcome.completeExceptionally(Stages.unwrap(t));
+            } else if (future instanceof CompletionStage) {
+                ((CompletionStage<Object>) future).whenComplete((r, ft) -> Stages.complete(outcome, r, ft));
+            } else {
+                // asynchronous methods return already completed futures
+                try {
+                    outcome.complete((future != null) ? future.get() : null);
+                } catch (ExecutionException ee) {
+                    outcome.completeExceptionally(ee.getCause());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    outcome.completeExceptionally(ie);
+                }
+            }
+        });
+        return Optional.of(outcome);
+    }
 }
@@ -0,0 +1,52 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.misc;
+
+/**
+ * Tells if a throwable is an instance of any of the given types.
+ * 
+ * The verdict is computed once per concrete throwable class and then cached, classifying a throwable
+ * is a single lookup that does not allocate.
+ */
+public class ExceptionClassifier {
+    private final Class<? extends Throwable>[] types;
+    private final ClassValue<Boolean> verdicts = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<? extends Throwable> t : types) {
+                if (t.isAssignableFrom(type)) {
+                    return Boolean.TRUE;
+                }
+            }
+            return Boolean.FALSE;
+        }
+    };
+
+    /**
+     * @param types the types to match, typically the retryOn, abortOn or failOn value of an annotation
+     */
+    public ExceptionClassifier(Class<? extends Throwable>[] types) {
+        this.types = types.clone();
+    }
+
+    /**
+     * @param t the throwable to classify, can be null
+     * @return true if the throwable is an instance of any of the types
+     */
+    public boolean matches(Throwable t) {
+        return t != null && verdicts.get(t.getClass());
+    }
+}
@@ -15,13 +15,19 @@
  */
 package fr.brouillard.oss.ee.fault.tolerance.misc;
 
-import java.util.Arrays;
-
 import org.eclipse.microprofile.faulttolerance.exceptions.TimeoutException;
 
 public class Exceptions {
-    public static boolean isAssignableToAnyOf(Class<? extends Throwable>[] abortOn, Throwable t) {
-        return Arrays.asList(abortOn).stream().filter(c -> c.isInstance(t)).findFirst().isPresent();
+    /**
+     * Prefer an {@link ExceptionClassifier} on hot paths, it caches the verdict per throwable class.
+     */
+    public static boolean isAssignableToAnyOf(Class<? extends Throwable>[] types, Throwable t) {
+        for (Class<? extends Throwable> c : types) {
+            if (c.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
     }
     
     public static boolean isFTTimeout(Throwable t) {
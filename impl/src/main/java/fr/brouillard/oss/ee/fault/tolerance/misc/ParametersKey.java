@@ -0,0 +1,51 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.misc;
+
+import java.util.Arrays;
+
+/**
+ * Identifies a call by the values of its parameters, arrays being compared by content.
+ */
+public final class ParametersKey {
+    private static final ParametersKey NO_PARAMETERS = new ParametersKey(new Object[0]);
+
+    private final Object[] parameters;
+    private final int hash;
+
+    private ParametersKey(Object[] parameters) {
+        this.parameters = parameters;
+        this.hash = Arrays.deepHashCode(parameters);
+    }
+
+    /**
+     * @param parameters the parameters of a call, they are copied
+     * @return the key of the call
+     */
+    public static ParametersKey of(Object[] parameters) {
+        return (parameters == null || parameters.length == 0) ? NO_PARAMETERS : new ParametersKey(parameters.clone());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ParametersKey && Arrays.deepEquals(parameters, ((ParametersKey) o).parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.misc;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+import javax.interceptor.InvocationContext;
+
+import fr.brouillard.oss.ee.fault.tolerance.impl.InvokerChain;
+
+/**
+ * Helpers for guarded methods returning a {@link CompletionStage}.
+ * 
+ * For such methods invokers do not wait for the outcome of the call: they compose on the returned stage and
+ * return a {@link CompletableFuture}, that is a valid value for a method declaring either {@link CompletionStage}
+ * or {@link CompletableFuture}. Failures are always delivered through the returned stage.
+ */
+public class Stages {
+    private Stages() {
+    }
+
+    /**
+     * @param method the guarded method
+     * @return true if the method result has to be handled as a stage
+     */
+    public static boolean isStage(Method method) {
+        Class<?> returnType = method.getReturnType();
+        return returnType == CompletionStage.class || returnType == CompletableFuture.class;
+    }
+
+    /**
+     * Invokes the chain, failures thrown synchronously are turned into a failed stage.
+     * @param chain the chain to invoke
+     * @param context the invocation context
+     * @return a future completed with the outcome of the stage returned by the chain
+     */
+    public static CompletableFuture<Object> invoke(InvokerChain chain, InvocationContext context) {
+        try {
+            return toFuture(chain.invoke(context));
+        } catch (Throwable t) {
+            return failed(t);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static CompletableFuture<Object> toFuture(Object result) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (result == null) {
+            future.complete(null);
+        } else {
+            ((CompletionStage<Object>) result).whenComplete((r, t) -> complete(future, r, t));
+        }
+        return future;
+    }
+
+    public static CompletableFuture<Object> failed(Throwable t) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        future.completeExceptionally(unwrap(t));
+        return future;
+    }
+
+    /**
+     * Completes the given future with the given outcome.
+     * @param future the future to complete
+     * @param result the result, used when there is no failure
+     * @param failure the failure, null if none
+     */
+    public static void complete(CompletableFuture<Object> future, Object result, Throwable failure) {
+        if (failure == null) {
+            future.complete(result);
+        } else {
+            future.completeExceptionally(unwrap(failure));
+        }
+    }
+
+    /**
+     * @param t a failure received from a stage or a future
+     * @return the failure of the call, without the exceptions wrapping it
+     */
+    public static Throwable unwrap(Throwable t) {
+        Throwable failure = t;
+        while ((failure instanceof CompletionException || failure instanceof ExecutionException) && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.rate_limit;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.inject.Inject;
+import javax.interceptor.InvocationContext;
+
+import fr.brouillard.oss.ee.fault.tolerance.EEGuardException;
+import fr.brouillard.oss.ee.fault.tolerance.RateLimitExceededException;
+import fr.brouillard.oss.ee.fault.tolerance.config.Configurator;
+import fr.brouillard.oss.ee.fault.tolerance.impl.Invoker;
+import fr.brouillard.oss.ee.fault.tolerance.impl.InvokerChain;
+import fr.brouillard.oss.ee.fault.tolerance.impl.TimeoutManager;
+import fr.brouillard.oss.ee.fault.tolerance.misc.Stages;
+
+/**
+ * Applies the {@link fr.brouillard.oss.ee.fault.tolerance.RateLimit} of a method.
+ * 
+ * Synchronous calls wait for their turn in the calling thread, calls of stage returning methods are scheduled
+ * for their turn without holding a thread.
+ */
+public class RateLimitInvoker implements Invoker {
+    @Inject
+    Configurator conf;
+    @Inject
+    TimeoutManager tm;
+
+    @Override
+    public Object invoke(InvocationContext context, InvokerChain chain) throws Exception {
+        RateLimiter limiter = conf.rateLimiter(context).orElseThrow(() -> new EEGuardException());
+
+        if (Stages.isStage(context.getMethod())) {
+            return invokeStage(context, chain, limiter);
+        }
+
+        if (!limiter.acquire()) {
+            throw rejected(context);
+        }
+        return chain.invoke(context);
+    }
+
+    private Object invokeStage(InvocationContext context, InvokerChain chain, RateLimiter limiter) {
+        long wait = limiter.reserve();
+        if (wait < 0) {
+            return Stages.failed(rejected(context));
+        }
+        if (wait == 0) {
+            return Stages.invoke(chain, context);
+        }
+
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        // rounded up, the call must not start before its turn
+        tm.schedule((wait + 999_999) / 1_000_000, () -> Stages.invoke(chain, context).whenComplete((r, t) -> Stages.complete(result, r, t)));
+        return result;
+    }
+
+    private static RateLimitExceededException rejected(InvocationContext context) {
+        return new RateLimitExceededException(String.format("rate limit of %s#%s exceeded"
+                , context.getMethod().getDeclaringClass().getName()
+                , context.getMethod().getName()));
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.rate_limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generic cell rate algorithm: a single {@link AtomicLong} holds the theoretical arrival time of the next call,
+ * based on {@link System#nanoTime()}.
+ * 
+ * Each admitted call pushes it by the emission interval, {@code period / permits}; a call is admitted without waiting
+ * while it is no further ahead of now than the burst tolerance. Acquiring does not allocate.
+ */
+public class RateLimiter {
+    private final int permits;
+    private final long periodInNanos;
+    private final long emissionIntervalInNanos;
+    private final long toleranceInNanos;
+    private final long maxWaitInNanos;
+    private final AtomicLong theoreticalArrivalTime;
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param permits the number of calls allowed per period, also the size of the bursts allowed
+     * @param periodInNanos the period, in nanoseconds
+     * @param maxWaitInNanos the maximum time a call can wait for its turn, 0 for none
+     */
+    public RateLimiter(int permits, long periodInNanos, long maxWaitInNanos) {
+        if (permits < 1 || periodInNanos < 1) {
+            throw new IllegalArgumentException("permits and period must be positive, got " + permits + " and " + periodInNanos);
+        }
+        this.permits = permits;
+        this.periodInNanos = periodInNanos;
+        this.emissionIntervalInNanos = Math.max(1, periodInNanos / permits);
+        this.toleranceInNanos = emissionIntervalInNanos * (permits - 1);
+        this.maxWaitInNanos = Math.max(0, maxWaitInNanos);
+        this.theoreticalArrivalTime = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Reserves the turn of a call.
+     * @return the time to wait, in nanoseconds, before making the call; -1 if the call would have to wait longer than allowed
+     */
+    public long reserve() {
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrivalTime.get();
+            // nanoTime values are only compared through differences
+            long start = (tat - now > 0) ? tat : now;
+            long wait = start - toleranceInNanos - now;
+            if (wait > maxWaitInNanos) {
+                rejections.increment();
+                return -1;
+            }
+            if (theoreticalArrivalTime.compareAndSet(tat, start + emissionIntervalInNanos)) {
+                return Math.max(0, wait);
+            }
+        }
+    }
+
+    /**
+     * Reserves the turn of a call and waits for it.
+     * @return true if the call can be made, false if it would have to wait longer than allowed
+     * @throws InterruptedException if the thread is interrupted while waiting, the turn is lost
+     */
+    public boolean acquire() throws InterruptedException {
+        long wait = reserve();
+        if (wait < 0) {
+            return false;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of calls rejected
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    public long getPeriodInNanos() {
+        return periodInNanos;
+    }
+
+    public long getMaxWaitInNanos() {
+        return maxWaitInNanos;
+    }
+
+    public long getEmissionIntervalInNanos() {
+        return emissionIntervalInNanos;
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.retry;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Computes the delay to wait before a retry.
+ * 
+ * Random draws use {@link ThreadLocalRandom}, there is no state shared between the calling threads.
+ */
+public class Backoff {
+    public enum Strategy {
+        /**
+         * the delay, plus a uniform jitter
+         */
+        FIXED,
+        /**
+         * the delay multiplied by the factor at each retry, plus a uniform jitter, up to the maximum delay
+         */
+        EXPONENTIAL,
+        /**
+         * a uniform draw between 0 and the exponential delay
+         */
+        FULL_JITTER,
+        /**
+         * a uniform draw between the delay and 3 times the previous delay, up to the maximum delay
+         */
+        DECORRELATED_JITTER;
+
+        public static Strategy parse(String value) {
+            return Strategy.valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    public static final double DEFAULT_FACTOR = 2.0;
+
+    private final Strategy strategy;
+    private final long delayInMillis;
+    private final long maxDelayInMillis;
+    private final long jitterInMillis;
+    private final double factor;
+
+    /**
+     * @param strategy the strategy to use
+     * @param delayInMillis the base delay
+     * @param maxDelayInMillis the upper bound of the computed delays
+     * @param jitterInMillis the upper bound of the uniform jitter, used by {@link Strategy#FIXED} and {@link Strategy#EXPONENTIAL}
+     * @param factor the growth factor of the exponential strategies
+     */
+    public Backoff(Strategy strategy, long delayInMillis, long maxDelayInMillis, long jitterInMillis, double factor) {
+        if (factor < 1) {
+            throw new IllegalArgumentException("backoff factor must be >= 1, got " + factor);
+        }
+        this.strategy = strategy;
+        this.delayInMillis = Math.max(0, delayInMillis);
+        this.maxDelayInMillis = Math.max(this.delayInMillis, maxDelayInMillis);
+        this.jitterInMillis = Math.max(0, jitterInMillis);
+        this.factor = factor;
+    }
+
+    /**
+     * @param retry the number of the retry to come, starting at 1
+     * @param previousDelayInMillis the delay computed for the previous retry, ignored for the first one
+     * @return the delay to wait before the retry
+     */
+    public long nextDelayInMillis(int retry, long previousDelayInMillis) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        switch (strategy) {
+            case EXPONENTIAL:
+                return Math.min(maxDelayInMillis, exponential(retry) + jitter(random));
+            case FULL_JITTER:
+                return random.nextLong(exponential(retry) + 1);
+            case DECORRELATED_JITTER:
+                long previous = (retry > 1) ? Math.max(delayInMillis, previousDelayInMillis) : delayInMillis;
+                long upper = Math.min(maxDelayInMillis, previous * 3);
+                return (upper > delayInMillis) ? random.nextLong(delayInMillis, upper + 1) : delayInMillis;
+            default:
+                return delayInMillis + jitter(random);
+        }
+    }
+
+    private long exponential(int retry) {
+        double delay = delayInMillis * Math.pow(factor, Math.max(0, retry - 1));
+        return (delay >= maxDelayInMillis) ? maxDelayInMillis : (long) delay;
+    }
+
+    private long jitter(ThreadLocalRandom random) {
+        return (jitterInMillis > 0) ? random.nextLong(jitterInMillis) : 0;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    @Override
+    public String toString() {
+        return "Backoff{strategy=" + strategy + ", delay=" + delayInMillis + "ms, maxDelay=" + maxDelayInMillis + "ms, jitter=" + jitterInMillis + "ms, factor=" + factor + '}';
+    }
+}
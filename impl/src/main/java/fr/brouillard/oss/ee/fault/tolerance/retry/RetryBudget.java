@@ -0,0 +1,107 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket capping the amplification of retries.
+ * 
+ * Calls succeeding on their first attempt earn a fraction of token, each retry spends one. With a ratio of 0.1,
+ * retries cannot exceed 10% of the successful calls once the initial reserve is spent, whatever the number of
+ * callers retrying during an outage.
+ */
+public class RetryBudget {
+    // tokens are stored in thousandths to keep the accounting on a single atomic long
+    private static final long UNIT = 1000;
+
+    private final long earnedPerSuccess;
+    private final long capacity;
+    private final AtomicLong tokens;
+    private final LongAdder spent = new LongAdder();
+    private final LongAdder denials = new LongAdder();
+
+    /**
+     * @param ratio the tokens earned by a call succeeding on its first attempt
+     * @param maxTokens the capacity of the bucket, it starts full
+     */
+    public RetryBudget(double ratio, double maxTokens) {
+        if (ratio <= 0 || maxTokens < 1) {
+            throw new IllegalArgumentException("retry budget requires a ratio > 0 and at least 1 token, got ratio=" + ratio + ", max=" + maxTokens);
+        }
+        this.earnedPerSuccess = Math.max(1, (long) (ratio * UNIT));
+        this.capacity = (long) (maxTokens * UNIT);
+        this.tokens = new AtomicLong(capacity);
+    }
+
+    public void onSuccess() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(capacity, current + earnedPerSuccess)));
+    }
+
+    /**
+     * Spends a token for a retry.
+     * @return false if the budget is exhausted, the retry must not be done
+     */
+    public boolean tryRetry() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < UNIT) {
+                denials.increment();
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - UNIT));
+        spent.increment();
+        return true;
+    }
+
+    /**
+     * @return the number of tokens available
+     */
+    public double getLevel() {
+        return (double) tokens.get() / UNIT;
+    }
+
+    public double getCapacity() {
+        return (double) capacity / UNIT;
+    }
+
+    /**
+     * @return the number of retries allowed by the budget
+     */
+    public long getSpent() {
+        return spent.sum();
+    }
+
+    /**
+     * @return the number of retries refused by the budget
+     */
+    public long getDenials() {
+        return denials.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "RetryBudget{level=" + getLevel() + ", capacity=" + getCapacity() + ", spent=" + getSpent() + ", denials=" + getDenials() + '}';
+    }
+}
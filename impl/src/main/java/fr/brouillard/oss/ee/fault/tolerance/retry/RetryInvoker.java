@@ -16,48 +16,59 @@
 package fr.brouillard.oss.ee.fault.tolerance.retry;
 
 import java.time.Duration;
-import java.util.Random;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 import javax.interceptor.InvocationContext;
 
+import org.eclipse.microprofile.faulttolerance.Asynchronous;
 import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
 import org.eclipse.microprofile.faulttolerance.exceptions.TimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import fr.brouillard.oss.ee.fault.tolerance.EEGuardException;
+import fr.brouillard.oss.ee.fault.tolerance.config.AnnotationFinder;
 import fr.brouillard.oss.ee.fault.tolerance.config.Configurator;
 import fr.brouillard.oss.ee.fault.tolerance.config.RetryContext;
 import fr.brouillard.oss.ee.fault.tolerance.impl.Invoker;
 import fr.brouillard.oss.ee.fault.tolerance.impl.InvokerChain;
+import fr.brouillard.oss.ee.fault.tolerance.impl.TimeoutManager;
 import fr.brouillard.oss.ee.fault.tolerance.misc.DelegateFuture;
-import fr.brouillard.oss.ee.fault.tolerance.misc.Exceptions;
+import fr.brouillard.oss.ee.fault.tolerance.misc.Stages;
 
 public class RetryInvoker implements Invoker {
     private final static Logger LOGGER  = LoggerFactory.getLogger(RetryInvoker.class); 
     private final Configurator conf;
-    private final Random rnd;
+
+    @Inject
+    TimeoutManager tm;
 
     @Inject
     public RetryInvoker(Configurator cfg) {
         this.conf = cfg;
-        this.rnd = new Random(System.nanoTime());
     }
 
     @Override
     public Object invoke(InvocationContext context, InvokerChain chain) throws Exception {
         RetryContext cfg = conf.retry(context).orElseThrow(() -> new EEGuardException());
+        if (Stages.isStage(context.getMethod())) {
+            return invokeStage(context, chain, cfg);
+        }
+        if (cfg.isScheduled() && isAsynchronous(context)) {
+            return invokeAsynchronously(context, chain, cfg);
+        }
 
         boolean ended = true;
         int retry = 0;
         Throwable latestFailure = null;
 
-        long jitterInMillis = 0;
+        long waitInMillis = 0;
         long durationInMillis = Duration.of(cfg.getMaxDuration(), cfg.getDurationUnit()).toMillis();
-        long delayInMillis = Duration.of(cfg.getDelay(), cfg.getDelayUnit()).toMillis();
         long durationExpirationTime = System.currentTimeMillis() + durationInMillis;
 
         do {
@@ -65,10 +76,12 @@ public class RetryInvoker implements Invoker {
                     , context.getTarget().getClass().getSimpleName()
                     , context.getMethod().getName(), retry);
             if (retry > 0 && cfg.getMaxRetries() > 0) {
-                jitterInMillis = computeJitterInMillis(cfg);
                 try {
-                    Thread.sleep(delayInMillis + jitterInMillis);
+                    Thread.sleep(waitInMillis);
                 } catch (InterruptedException e) {
+                    // stop retrying, the caller is given the latest failure
+                    Thread.currentThread().interrupt();
+                    break;
                 }
             }
 
@@ -87,6 +100,9 @@ public class RetryInvoker implements Invoker {
                         fr.get();
                     }
                 }
+                if (retry == 0) {
+                    cfg.onFirstAttemptSuccess();
+                }
                 LOGGER.debug("{}#{} succeed after {} retries"
                         , context.getTarget().getClass().getSimpleName()
                         , context.getMethod().getName()
@@ -103,33 +119,24 @@ public class RetryInvoker implements Invoker {
                         , retry
                         , latestFailure.getMessage());
 
-                // AbortOn has priority on RetryOn
-                
-                // Lets stop execution if:
-                // - CircuitBreaker was opened 
-                // - or if received throwable was configured to stop retry executions 
-                boolean shouldStopExecution = CircuitBreakerOpenException.class.isInstance(latestFailure) || Exceptions.isAssignableToAnyOf(cfg.getAbortOn(), latestFailure);
-                if (shouldStopExecution) {
-                    LOGGER.trace("exception[{}] makes the retry process to stop at retry[{}]"
-                            , latestFailure.getClass().getSimpleName()
-                            , retry);
-                    break;
-                }
-
-                // Lets continue
-                // - We received a TimeoutException from TimeoutInvoker 
-                // - or if received throwable was configured to retry executions 
-                boolean continueExecution = TimeoutException.class.isInstance(latestFailure) || Exceptions.isAssignableToAnyOf(cfg.getRetryOn(), latestFailure);
-                if (!continueExecution) {
-                    LOGGER.trace("unexpected exception[{}] makes the retry process to stop at retry[{}]"
-                            , latestFailure.getClass().getSimpleName()
-                            , retry);
+                if (!isRetryable(cfg, latestFailure, retry)) {
                     break;
                 }
             }
 
             retry++;
             ended = (retry > cfg.getMaxRetries());
+            if (!ended) {
+                waitInMillis = cfg.getBackoff().nextDelayInMillis(retry, waitInMillis);
+                // a retry that could not start in time must not spend a token of the budget
+                if (System.currentTimeMillis() + waitInMillis > durationExpirationTime) {
+                    break;
+                }
+                if (!cfg.acquireRetry()) {
+                    LOGGER.debug("{}#{} retry budget exhausted", context.getTarget().getClass().getSimpleName(), context.getMethod().getName());
+                    break;
+                }
+            }
         } while (!ended);
 
         LOGGER.debug("{}#{} failed after {} retries, exception: {}"
@@ -149,8 +156,107 @@ public class RetryInvoker implements Invoker {
         }
     }
 
-    private long computeJitterInMillis(RetryContext cfg) {
-        long jitter = Duration.of(cfg.getJitter(), cfg.getJitterDelayUnit()).toMillis();
-        return rnd.nextInt((int) jitter);
+    private boolean isRetryable(RetryContext cfg, Throwable failure, int retry) {
+        // AbortOn has priority on RetryOn
+        
+        // Lets stop execution if:
+        // - CircuitBreaker was opened 
+        // - or if received throwable was configured to stop retry executions 
+        boolean shouldStopExecution = CircuitBreakerOpenException.class.isInstance(failure) || cfg.isAbortOn(failure);
+        if (shouldStopExecution) {
+            LOGGER.trace("exception[{}] makes the retry process to stop at retry[{}]"
+                    , failure.getClass().getSimpleName()
+                    , retry);
+            return false;
+        }
+
+        // Lets continue
+        // - We received a TimeoutException from TimeoutInvoker 
+        // - or if received throwable was configured to retry executions 
+        boolean continueExecution = TimeoutException.class.isInstance(failure) || cfg.isRetryOn(failure);
+        if (!continueExecution) {
+            LOGGER.trace("unexpected exception[{}] makes the retry process to stop at retry[{}]"
+                    , failure.getClass().getSimpleName()
+                    , retry);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Attempts are chained on the completion of the previous one, further attempts are scheduled after the delay:
+     * no thread is held while waiting.
+     */
+    private Object invokeStage(InvocationContext context, InvokerChain chain, RetryContext cfg) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        long durationExpirationTime = System.currentTimeMillis() + Duration.of(cfg.getMaxDuration(), cfg.getDurationUnit()).toMillis();
+
+        attempt(() -> Stages.invoke(chain, context), cfg, result, 0, 0, durationExpirationTime);
+        return result;
+    }
+
+    private static boolean isAsynchronous(InvocationContext context) {
+        return context.getMethod().getReturnType() == Future.class
+                && AnnotationFinder.find(context, Asynchronous.class).getAnnotation().isPresent();
+    }
+
+    /**
+     * Same as {@link #invokeStage(InvocationContext, InvokerChain, RetryContext)} for asynchronous methods returning a {@link Future}:
+     * the caller gets a future completed by the first successful attempt, or by the latest failure.
+     */
+    private Object invokeAsynchronously(InvocationContext context, InvokerChain chain, RetryContext cfg) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        long durationExpirationTime = System.currentTimeMillis() + Duration.of(cfg.getMaxDuration(), cfg.getDurationUnit()).toMillis();
+
+        attempt(() -> observe(chain, context), cfg, result, 0, 0, durationExpirationTime);
+        // cancelling the returned future stops further attempts
+        return new DelegateFuture<>(result.thenApply(CompletableFuture::completedFuture), result);
+    }
+
+    private static CompletableFuture<Object> observe(InvokerChain chain, InvocationContext context) {
+        try {
+            Object result = chain.invoke(context);
+            if (result instanceof DelegateFuture) {
+                Optional<CompletableFuture<Object>> outcome = ((DelegateFuture<?>) result).toCompletableFuture();
+                if (outcome.isPresent()) {
+                    return outcome.get();
+                }
+            }
+            // the call was not dispatched, the returned future is already completed
+            return CompletableFuture.completedFuture((result != null) ? ((Future<?>) result).get() : null);
+        } catch (Throwable t) {
+            return Stages.failed(t);
+        }
+    }
+
+    private void attempt(Supplier<CompletableFuture<Object>> call, RetryContext cfg, CompletableFuture<Object> result, int retry, long previousWaitInMillis, long durationExpirationTime) {
+        if (result.isDone()) {
+            // cancelled by the caller
+            return;
+        }
+        call.get().whenComplete((r, t) -> {
+            if (t == null) {
+                if (retry == 0) {
+                    cfg.onFirstAttemptSuccess();
+                }
+                result.complete(r);
+                return;
+            }
+
+            Throwable failure = Stages.unwrap(t);
+            int next = retry + 1;
+            if (!isRetryable(cfg, failure, retry) || next > cfg.getMaxRetries()) {
+                result.completeExceptionally(failure);
+                return;
+            }
+
+            long waitInMillis = (cfg.getMaxRetries() > 0) ? cfg.getBackoff().nextDelayInMillis(next, previousWaitInMillis) : 0;
+            if (System.currentTimeMillis() + waitInMillis > durationExpirationTime || !cfg.acquireRetry()) {
+                result.completeExceptionally(failure);
+                return;
+            }
+
+            tm.schedule(waitInMillis, () -> attempt(call, cfg, result, next, waitInMillis, durationExpirationTime));
+        });
     }
 }
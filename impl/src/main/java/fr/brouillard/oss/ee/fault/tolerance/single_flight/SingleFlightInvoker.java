@@ -0,0 +1,161 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.ee.fault.tolerance.single_flight;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.interceptor.InvocationContext;
+
+import fr.brouillard.oss.ee.fault.tolerance.SingleFlight;
+import fr.brouillard.oss.ee.fault.tolerance.impl.Invoker;
+import fr.brouillard.oss.ee.fault.tolerance.impl.InvokerChain;
+import fr.brouillard.oss.ee.fault.tolerance.misc.DelegateFuture;
+import fr.brouillard.oss.ee.fault.tolerance.misc.ParametersKey;
+import fr.brouillard.oss.ee.fault.tolerance.misc.Stages;
+
+/**
+ * Coalesces identical concurrent calls of methods annotated with {@link SingleFlight}.
+ * 
+ * The first call of a method with given parameters goes through the rest of the chain, identical calls arriving while
+ * it is in flight wait for its outcome: synchronous callers block on it, callers of stage returning methods get their
+ * own stage completed with it. Callers of asynchronous methods returning a {@link Future} share the future of the call
+ * in flight; when its completion cannot be observed, calls are only coalesced while the first one is dispatched.
+ */
+@ApplicationScoped
+public class SingleFlightInvoker implements Invoker {
+    private ConcurrentMap<Method, Flights> flightsByMethod;
+
+    @PostConstruct
+    public void initialize() {
+        flightsByMethod = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public Object invoke(InvocationContext context, InvokerChain chain) throws Exception {
+        Method method = context.getMethod();
+        Flights flights = flightsByMethod.get(method);
+        if (flights == null) {
+            flights = flightsByMethod.computeIfAbsent(method, m -> new Flights());
+        }
+
+        ParametersKey key = ParametersKey.of(context.getParameters());
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = flights.calls.putIfAbsent(key, call);
+        if (inFlight != null) {
+            flights.coalesced.increment();
+            return follow(method, inFlight);
+        }
+
+        if (Stages.isStage(method)) {
+            return leadStage(context, chain, flights, key, call);
+        }
+        if (Future.class.isAssignableFrom(method.getReturnType())) {
+            return leadAsynchronously(context, chain, flights, key, call);
+        }
+
+        try {
+            Object result = chain.invoke(context);
+            flights.calls.remove(key, call);
+            call.complete(result);
+            return result;
+        } catch (Throwable t) {
+            flights.calls.remove(key, call);
+            call.completeExceptionally(t);
+            throw t;
+        }
+    }
+
+    private Object leadStage(InvocationContext context, InvokerChain chain, Flights flights, ParametersKey key, CompletableFuture<Object> call) {
+        CompletableFuture<Object> outcome = Stages.invoke(chain, context);
+        outcome.whenComplete((r, t) -> {
+            flights.calls.remove(key, call);
+            Stages.complete(call, r, t);
+        });
+        return outcome;
+    }
+
+    /**
+     * The call in flight is completed with the future returned to the first caller, it is shared until it completes.
+     */
+    private Object leadAsynchronously(InvocationContext context, InvokerChain chain, Flights flights, ParametersKey key, CompletableFuture<Object> call) throws Exception {
+        Object result;
+        try {
+            result = chain.invoke(context);
+        } catch (Throwable t) {
+            flights.calls.remove(key, call);
+            call.completeExceptionally(t);
+            throw t;
+        }
+
+        Optional<CompletableFuture<Object>> outcome = (result instanceof DelegateFuture)
+                ? ((DelegateFuture<?>) result).toCompletableFuture()
+                : Optional.empty();
+        if (outcome.isPresent()) {
+            outcome.get().whenComplete((r, t) -> flights.calls.remove(key, call));
+        } else {
+            flights.calls.remove(key, call);
+        }
+        call.complete(result);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object follow(Method method, CompletableFuture<Object> inFlight) throws Exception {
+        if (Stages.isStage(method) || Future.class.isAssignableFrom(method.getReturnType())) {
+            // each caller gets its own future, cancelling it does not affect the others
+            CompletableFuture<Object> copy = new CompletableFuture<>();
+            inFlight.whenComplete((r, t) -> Stages.complete(copy, r, t));
+            return Stages.isStage(method) ? copy : new DelegateFuture<>((Future<Future<Object>>) (Future<?>) copy);
+        }
+
+        try {
+            return inFlight.get();
+        } catch (ExecutionException ee) {
+            Throwable failure = ee.getCause();
+            if (failure instanceof Exception) {
+                throw (Exception) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new UndeclaredThrowableException(failure);
+        }
+    }
+
+    /**
+     * @param method a method annotated with {@link SingleFlight}
+     * @return the number of calls of the method that waited for an identical call instead of being executed
+     */
+    public long getCoalescedCalls(Method method) {
+        Flights flights = flightsByMethod.get(method);
+        return (flights != null) ? flights.coalesced.sum() : 0;
+    }
+
+    private static class Flights {
+        private final ConcurrentMap<ParametersKey, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+        private final LongAdder coalesced = new LongAdder();
+    }
+}
@@ -15,7 +15,7 @@
  */
 package fr.brouillard.oss.ee.fault.tolerance.timeout;
 
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import javax.inject.Inject;
 import javax.interceptor.InvocationContext;
@@ -29,6 +29,7 @@ import fr.brouillard.oss.ee.fault.tolerance.impl.Invoker;
 import fr.brouillard.oss.ee.fault.tolerance.impl.InvokerChain;
 import fr.brouillard.oss.ee.fault.tolerance.impl.TimeoutManager;
 import fr.brouillard.oss.ee.fault.tolerance.misc.CallContext;
+import fr.brouillard.oss.ee.fault.tolerance.misc.Stages;
 
 public class TimeoutInvoker implements Invoker {
     @Inject
@@ -40,11 +41,20 @@ public class TimeoutInvoker implements Invoker {
     @Override
     public Object invoke(InvocationContext context, InvokerChain chain) throws Exception {
         TimeoutContext tctx = cfg.timeout(context).orElseThrow(() -> new EEGuardException());
-        String uuid = UUID.randomUUID().toString();
+        if (Stages.isStage(context.getMethod())) {
+            return invokeStage(tctx, context, chain);
+        }
 
         Thread executingThread = Thread.currentThread();
-        CallContext callContext = tm.register(uuid, tctx.toMillis(), executingThread);
-        
+        CallContext callContext = tm.register(tctx.toMillis(), executingThread, !tctx.isCooperative());
+
+        // in cooperative mode, interruption is an opt-in escalation
+        CallContext escalation = null;
+        if (tctx.isCooperative() && tctx.getInterruptDelayInMillis() >= 0) {
+            escalation = tm.register(tctx.toMillis() + tctx.getInterruptDelayInMillis(), executingThread, true);
+        }
+
+        CallContext outer = callContext.publish();
         try {
             Object result = chain.invoke(context);
             if (callContext.wasTimeoutReached()) {
@@ -60,7 +70,26 @@ public class TimeoutInvoker implements Invoker {
             }
             throw t;
         } finally {
-            tm.cancelTimerByUUID(uuid);
+            CallContext.restore(outer);
+            tm.cancel(callContext);
+            if (escalation != null) {
+                tm.cancel(escalation);
+            }
         }
     }
+
+    /**
+     * The timeout applies to the completion of the returned stage, nothing is interrupted: the stage given
+     * to the caller is failed when the timeout is reached.
+     */
+    private Object invokeStage(TimeoutContext tctx, InvocationContext context, InvokerChain chain) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        CallContext timer = tm.schedule(tctx.toMillis(), () -> result.completeExceptionally(new TimeoutException()));
+
+        Stages.invoke(chain, context).whenComplete((r, t) -> {
+            tm.cancel(timer);
+            Stages.complete(result, r, t);
+        });
+        return result;
+    }
 }
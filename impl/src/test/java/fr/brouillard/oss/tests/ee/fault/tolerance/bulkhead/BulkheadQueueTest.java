@@ -0,0 +1,97 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.bulkhead;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.bulkhead.BulkheadQueue;
+import fr.brouillard.oss.ee.fault.tolerance.config.BulkheadContext;
+
+public class BulkheadQueueTest {
+    @Test
+    public void queue_is_bounded() {
+        BulkheadQueue queue = new BulkheadQueue(BulkheadQueue.Ordering.FIFO, 1);
+
+        Assert.assertTrue(queue.offer(0, BulkheadQueue.NO_DEADLINE, () -> {}));
+        Assert.assertFalse(queue.offer(0, BulkheadQueue.NO_DEADLINE, () -> {}));
+    }
+
+    @Test
+    public void highest_priority_is_dispatched_first() {
+        BulkheadQueue queue = new BulkheadQueue(BulkheadQueue.Ordering.PRIORITY, 3);
+        Runnable batch = () -> {};
+        Runnable critical = () -> {};
+        Runnable otherBatch = () -> {};
+
+        queue.offer(0, BulkheadQueue.NO_DEADLINE, batch);
+        queue.offer(10, BulkheadQueue.NO_DEADLINE, critical);
+        queue.offer(0, BulkheadQueue.NO_DEADLINE, otherBatch);
+
+        Assert.assertSame(queue.poll(), critical);
+        Assert.assertSame(queue.poll(), batch);
+        Assert.assertSame(queue.poll(), otherBatch);
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void earliest_deadline_is_dispatched_first() {
+        BulkheadQueue queue = new BulkheadQueue(BulkheadQueue.Ordering.DEADLINE, 3);
+        long now = System.nanoTime();
+        Runnable none = () -> {};
+        Runnable late = () -> {};
+        Runnable soon = () -> {};
+
+        queue.offer(0, BulkheadQueue.NO_DEADLINE, none);
+        queue.offer(0, now + 1_000_000_000L, late);
+        queue.offer(0, now + 1_000_000L, soon);
+
+        Assert.assertSame(queue.poll(), soon);
+        Assert.assertSame(queue.poll(), late);
+        Assert.assertSame(queue.poll(), none);
+    }
+
+    @Test
+    public void most_recent_is_dispatched_first_under_overload() {
+        BulkheadQueue queue = new BulkheadQueue(BulkheadQueue.Ordering.parse("lifo-under-overload"), 4);
+        Runnable first = () -> {};
+        Runnable second = () -> {};
+        Runnable third = () -> {};
+
+        queue.offer(0, BulkheadQueue.NO_DEADLINE, first);
+        queue.offer(0, BulkheadQueue.NO_DEADLINE, second);
+        queue.offer(0, BulkheadQueue.NO_DEADLINE, third);
+
+        // 3 of 4 slots used: overloaded
+        Assert.assertSame(queue.poll(), third);
+        // 2 of 4 slots used: back to arrival order
+        Assert.assertSame(queue.poll(), first);
+    }
+
+    @Test
+    public void only_executions_refused_by_the_full_queue_are_rejections() {
+        BulkheadContext context = new BulkheadContext(1, 1, true, false, null, 0, null, new BulkheadQueue(BulkheadQueue.Ordering.FIFO, 1));
+
+        Assert.assertTrue(context.tryAcquireExecution());
+        Assert.assertFalse(context.tryAcquireExecution());
+        Assert.assertTrue(context.enqueue(0, BulkheadQueue.NO_DEADLINE, () -> {}));
+        Assert.assertEquals(context.getRejections(), 0);
+
+        Assert.assertFalse(context.tryAcquireExecution());
+        Assert.assertFalse(context.enqueue(0, BulkheadQueue.NO_DEADLINE, () -> {}));
+        Assert.assertEquals(context.getRejections(), 1);
+    }
+}
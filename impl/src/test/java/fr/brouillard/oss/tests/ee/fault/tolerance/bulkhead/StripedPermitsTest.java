@@ -0,0 +1,74 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.bulkhead;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.bulkhead.StripedPermits;
+
+public class StripedPermitsTest {
+    @Test
+    public void permits_are_bounded_by_the_limit() {
+        StripedPermits permits = new StripedPermits(2);
+
+        Assert.assertTrue(permits.tryAcquire());
+        Assert.assertTrue(permits.tryAcquire());
+        Assert.assertFalse(permits.tryAcquire());
+        Assert.assertEquals(permits.getRejected(), 1);
+
+        permits.release();
+        Assert.assertTrue(permits.tryAcquire());
+        Assert.assertEquals(permits.getInUse(), 2);
+    }
+
+    @Test
+    public void lowered_limit_applies_once_permits_are_released() {
+        StripedPermits permits = new StripedPermits(2);
+        permits.tryAcquire();
+        permits.tryAcquire();
+
+        permits.setLimit(1);
+        permits.release();
+        Assert.assertFalse(permits.tryAcquire());
+        permits.release();
+        Assert.assertTrue(permits.tryAcquire());
+    }
+
+    @Test
+    public void raised_limit_wakes_up_waiters() throws InterruptedException {
+        StripedPermits permits = new StripedPermits(1);
+        permits.tryAcquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                permits.acquire();
+                acquired.countDown();
+            } catch (InterruptedException ie) {
+                // test will fail
+            }
+        });
+        waiter.start();
+
+        Assert.assertFalse(acquired.await(50, TimeUnit.MILLISECONDS));
+        permits.setLimit(2);
+        Assert.assertTrue(acquired.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.bulkhead;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.bulkhead.VegasLimit;
+
+public class VegasLimitTest {
+    @Test
+    public void limit_grows_while_latency_stays_low() {
+        VegasLimit limit = new VegasLimit(10, 1, 50);
+        limit.onSample(1_000_000, 10);
+
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(1_000_000, limit.getLimit());
+        }
+
+        Assert.assertTrue(limit.getLimit() > 10, "limit should have grown: " + limit);
+        Assert.assertTrue(limit.getLimit() <= 50);
+    }
+
+    @Test
+    public void limit_is_not_raised_when_unused() {
+        VegasLimit limit = new VegasLimit(10, 1, 50);
+        limit.onSample(1_000_000, 1);
+
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(1_000_000, 1);
+        }
+
+        Assert.assertEquals(limit.getLimit(), 10);
+    }
+
+    @Test
+    public void limit_shrinks_down_to_min_when_latency_collapses() {
+        VegasLimit limit = new VegasLimit(20, 5, 50);
+        limit.onSample(1_000_000, 20);
+
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(10_000_000, limit.getLimit());
+        }
+
+        Assert.assertEquals(limit.getLimit(), 5);
+        Assert.assertEquals(limit.getLastRtt(), 10_000_000);
+    }
+}
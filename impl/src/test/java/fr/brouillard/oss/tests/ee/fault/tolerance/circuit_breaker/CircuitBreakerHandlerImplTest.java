@@ -15,6 +15,9 @@
  */
 package fr.brouillard.oss.tests.ee.fault.tolerance.circuit_breaker;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
@@ -49,6 +52,44 @@ public class CircuitBreakerHandlerImplTest {
         Assert.assertEquals(cb.getState(), CircuitState.OPENED);
     }
 
+    @Test
+    public void concurrent_failures_open_the_circuit() throws InterruptedException {
+        int threads = 8;
+        CircuitBreakerHandlerImpl cb = new CircuitBreakerHandlerImpl(
+                new Class[] {Exception.class},
+                TimeUnit.MILLISECONDS.toNanos(2000),
+                threads,
+                0.5d,
+                1
+        );
+
+        Exception exception = new Exception();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                executor.submit(() -> {
+                    try {
+                        start.await();
+                        cb.enter();
+                        cb.onFailure(exception);
+                    } catch (Exception ignore) {
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            start.countDown();
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(cb.getState(), CircuitState.OPENED);
+        AdditionalAssertions.assertThrows(CircuitBreakerOpenException.class, cb::enter);
+    }
+
     @Test
     public void circuit_closes_after_one_expected_success() {
         int expectedFailures = 3;
@@ -84,6 +125,188 @@ public class CircuitBreakerHandlerImplTest {
         Assert.assertEquals(cb.getState(), CircuitState.CLOSED);
     }
 
+    @Test
+    public void half_opened_circuit_admits_only_success_threshold_trials() throws InterruptedException {
+        int volumeThreshold = 2;
+        int successThreshold = 2;
+        CircuitBreakerHandlerImpl cb = new CircuitBreakerHandlerImpl(
+                new Class[] {Exception.class},
+                TimeUnit.MILLISECONDS.toNanos(100l),
+                volumeThreshold,
+                1.0d,
+                successThreshold
+        );
+
+        Exception exception = new Exception();
+        for (int i = 0; i < volumeThreshold; i++) {
+            cb.enter();
+            cb.onFailure(exception);
+        }
+        Assert.assertEquals(cb.getState(), CircuitState.OPENED);
+
+        Thread.sleep(200l);
+
+        cb.enter();
+        cb.enter();
+        Assert.assertEquals(cb.getState(), CircuitState.SEMI_OPENED);
+        Assert.assertEquals(cb.getHalfOpenPermitsInFlight(), 2);
+        AdditionalAssertions.assertThrows(CircuitBreakerOpenException.class, cb::enter);
+
+        cb.success();
+        Assert.assertEquals(cb.getHalfOpenPermitsInFlight(), 1);
+        cb.enter();
+        Assert.assertEquals(cb.getHalfOpenPermitsInFlight(), 2);
+
+        cb.success();
+        Assert.assertEquals(cb.getState(), CircuitState.CLOSED);
+        Assert.assertEquals(cb.getHalfOpenPermitsInFlight(), 0);
+    }
+
+    @Test
+    public void only_trial_calls_count_while_half_opened() throws InterruptedException {
+        CircuitBreakerHandlerImpl cb = new CircuitBreakerHandlerImpl(
+                new Class[] {Exception.class},
+                TimeUnit.MILLISECONDS.toNanos(100l),
+                1,
+                1.0d,
+                1
+        );
+
+        boolean lateCall = cb.enter();
+        Assert.assertFalse(lateCall, "the circuit is closed");
+        Assert.assertFalse(cb.enter());
+        cb.onFailure(new Exception(), false);
+        Assert.assertEquals(cb.getState(), CircuitState.OPENED);
+
+        Thread.sleep(200l);
+
+        Assert.assertTrue(cb.enter());
+        Assert.assertEquals(cb.getHalfOpenPermitsInFlight(), 1);
+
+        // the call admitted while closed ends now, it is not a trial call
+        cb.success(lateCall);
+        Assert.assertEquals(cb.getState(), CircuitState.SEMI_OPENED);
+        Assert.assertEquals(cb.getHalfOpenPermitsInFlight(), 1);
+
+        // the trial call ends with an error, its permit is given back
+        cb.release(true);
+        Assert.assertEquals(cb.getHalfOpenPermitsInFlight(), 0);
+        Assert.assertTrue(cb.enter());
+        cb.success(true);
+        Assert.assertEquals(cb.getState(), CircuitState.CLOSED);
+    }
+
+    @Test
+    public void failed_trial_reopens_the_circuit_despite_concurrent_successes() throws InterruptedException {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 50; round++) {
+                CircuitBreakerHandlerImpl cb = new CircuitBreakerHandlerImpl(
+                        new Class[] {Exception.class},
+                        TimeUnit.MILLISECONDS.toNanos(10l),
+                        1,
+                        1.0d,
+                        threads + 1
+                );
+                cb.enter();
+                cb.onFailure(new Exception());
+                Assert.assertEquals(cb.getState(), CircuitState.OPENED);
+
+                Thread.sleep(20l);
+
+                for (int i = 0; i < threads; i++) {
+                    Assert.assertTrue(cb.enter());
+                }
+
+                CountDownLatch start = new CountDownLatch(1);
+                CountDownLatch done = new CountDownLatch(threads);
+                for (int i = 0; i < threads; i++) {
+                    boolean fails = (i == 0);
+                    executor.submit(() -> {
+                        try {
+                            start.await();
+                            if (fails) {
+                                cb.onFailure(new Exception(), true);
+                            } else {
+                                cb.success(true);
+                            }
+                        } catch (InterruptedException ignore) {
+                        } finally {
+                            done.countDown();
+                        }
+                    });
+                }
+                start.countDown();
+                Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+                Assert.assertEquals(cb.getState(), CircuitState.OPENED, "round " + round);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void racing_trial_outcomes_never_leak_permits() throws InterruptedException {
+        int threads = 8;
+        CircuitBreakerHandlerImpl cb = new CircuitBreakerHandlerImpl(
+                new Class[] {Exception.class},
+                TimeUnit.MILLISECONDS.toNanos(10l),
+                1,
+                1.0d,
+                threads
+        );
+        cb.enter();
+        cb.onFailure(new Exception());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 50; round++) {
+                Thread.sleep(20l);
+                for (int i = 0; i < threads; i++) {
+                    Assert.assertTrue(cb.enter());
+                }
+
+                CountDownLatch start = new CountDownLatch(1);
+                CountDownLatch done = new CountDownLatch(threads);
+                for (int i = 0; i < threads; i++) {
+                    boolean fails = (i % 2 == 0);
+                    executor.submit(() -> {
+                        try {
+                            start.await();
+                            if (fails) {
+                                cb.onFailure(new Exception(), true);
+                            } else {
+                                cb.success(true);
+                            }
+                        } catch (InterruptedException ignore) {
+                        } finally {
+                            done.countDown();
+                        }
+                    });
+                }
+                start.countDown();
+                Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+                Assert.assertEquals(cb.getState(), CircuitState.OPENED, "round " + round);
+                Assert.assertEquals(cb.getHalfOpenPermitsInFlight(), 0, "round " + round);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // the circuit still half-opens and closes afterwards
+        Thread.sleep(20l);
+        for (int i = 0; i < threads; i++) {
+            Assert.assertTrue(cb.enter());
+        }
+        for (int i = 0; i < threads; i++) {
+            cb.success(true);
+        }
+        Assert.assertEquals(cb.getState(), CircuitState.CLOSED);
+    }
+
     @Test
     public void mimic_CircuitBreakerTest_testCircuitHighSuccessThreshold() {
         int volumeThreshold = 4;
@@ -0,0 +1,75 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.circuit_breaker;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.circuit_breaker.ExecutionRingBuffer;
+
+public class ExecutionRingBufferTest {
+    @Test
+    public void ratio_is_zero_until_window_is_full() {
+        ExecutionRingBuffer buffer = new ExecutionRingBuffer(4);
+
+        buffer.record(10, false);
+        buffer.record(11, false);
+        buffer.record(12, false);
+        Assert.assertEquals(buffer.failureRatio(0, false), 0.0d);
+
+        buffer.record(13, true);
+        Assert.assertEquals(buffer.failureRatio(0, false), 0.75d);
+    }
+
+    @Test
+    public void overwritten_outcomes_update_ratio() {
+        ExecutionRingBuffer buffer = new ExecutionRingBuffer(2);
+
+        buffer.record(10, false);
+        buffer.record(11, false);
+        Assert.assertEquals(buffer.failureRatio(0, false), 1.0d);
+
+        buffer.record(12, true);
+        Assert.assertEquals(buffer.failureRatio(0, false), 0.5d);
+
+        buffer.record(13, true);
+        Assert.assertEquals(buffer.failureRatio(0, false), 0.0d);
+        Assert.assertEquals(buffer.snapshot().size(), 2);
+    }
+
+    @Test
+    public void executions_outside_of_time_window_are_ignored() {
+        ExecutionRingBuffer buffer = new ExecutionRingBuffer(2);
+
+        buffer.record(10, false);
+        buffer.record(20, false);
+
+        Assert.assertEquals(buffer.failureRatio(9, false), 1.0d);
+        Assert.assertEquals(buffer.failureRatio(10, false), 0.0d);
+    }
+
+    @Test
+    public void leading_successes_can_be_skipped() {
+        ExecutionRingBuffer buffer = new ExecutionRingBuffer(3);
+
+        buffer.record(10, true);
+        buffer.record(11, false);
+        buffer.record(12, false);
+
+        Assert.assertEquals(buffer.failureRatio(0, true), 0.0d);
+        Assert.assertEquals(buffer.failureRatio(0, false), 2.0d / 3.0d);
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.circuit_breaker;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.circuit_breaker.TimeBucketWindow;
+
+public class TimeBucketWindowTest {
+    @Test
+    public void ratio_is_zero_below_volume_threshold() {
+        TimeBucketWindow window = new TimeBucketWindow(10, 1000, 3);
+
+        window.record(100, false);
+        window.record(150, false);
+        Assert.assertEquals(window.failureRatio(0, false), 0.0d);
+
+        window.record(250, true);
+        Assert.assertEquals(window.failureRatio(0, false), 2.0d / 3.0d);
+    }
+
+    @Test
+    public void buckets_leaving_the_window_are_not_counted() {
+        TimeBucketWindow window = new TimeBucketWindow(10, 1000, 1);
+
+        window.record(100, false);
+        window.record(1500, true);
+
+        Assert.assertEquals(window.failureRatio(500, false), 0.0d);
+        Assert.assertEquals(window.failureRatio(0, false), 0.5d);
+    }
+
+    @Test
+    public void recycled_buckets_forget_previous_executions() {
+        TimeBucketWindow window = new TimeBucketWindow(2, 200, 1);
+
+        window.record(10, false);
+        // same bucket index, two windows later
+        window.record(410, true);
+
+        Assert.assertEquals(window.failureRatio(0, false), 0.0d);
+    }
+}
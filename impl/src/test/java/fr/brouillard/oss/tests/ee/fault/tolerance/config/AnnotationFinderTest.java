@@ -0,0 +1,73 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.config;
+
+import java.lang.reflect.Method;
+
+import org.eclipse.microprofile.faulttolerance.Retry;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.config.AnnotationFinder;
+
+public class AnnotationFinderTest {
+    @Test
+    public void resolution_is_memoized() throws Exception {
+        Method m = Service.class.getMethod("call");
+
+        AnnotationFinder.AnnotationFindResult<Retry> first = AnnotationFinder.find(Retry.class, Service.class, m);
+        AnnotationFinder.AnnotationFindResult<Retry> second = AnnotationFinder.find(Retry.class, Service.class, m);
+
+        Assert.assertTrue(first.getAnnotation().isPresent());
+        Assert.assertSame(second, first);
+    }
+
+    @Test
+    public void inherited_method_is_resolved_through_hierarchy() throws Exception {
+        Method m = Service.class.getMethod("call");
+        AnnotationFinder.index(SubService.class);
+
+        AnnotationFinder.AnnotationFindResult<Retry> retry = AnnotationFinder.find(Retry.class, SubService.class, m);
+        Assert.assertTrue(retry.getAnnotation().isPresent());
+        Assert.assertEquals(retry.getFoundKey(), Service.class.getName() + "/call");
+        Assert.assertEquals(retry.getFoundOn(), m);
+
+        AnnotationFinder.AnnotationFindResult<Timeout> timeout = AnnotationFinder.find(Timeout.class, SubService.class, m);
+        Assert.assertFalse(timeout.getAnnotation().isPresent());
+    }
+
+    @Test
+    public void evicted_class_is_resolved_again() throws Exception {
+        Method m = Service.class.getMethod("call");
+
+        AnnotationFinder.AnnotationFindResult<Retry> before = AnnotationFinder.find(Retry.class, Service.class, m);
+        AnnotationFinder.evict(Service.class);
+        AnnotationFinder.AnnotationFindResult<Retry> after = AnnotationFinder.find(Retry.class, Service.class, m);
+
+        Assert.assertNotSame(after, before);
+        Assert.assertEquals(after.getAnnotation(), before.getAnnotation());
+    }
+
+    public static class Service {
+        @Retry
+        public void call() {
+        }
+    }
+
+    public static class SubService extends Service {
+    }
+}
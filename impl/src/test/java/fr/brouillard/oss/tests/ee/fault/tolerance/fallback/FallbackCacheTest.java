@@ -0,0 +1,64 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.fallback;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.fallback.FallbackCache;
+
+public class FallbackCacheTest {
+    @Test
+    public void results_are_stored_by_parameters() {
+        FallbackCache cache = new FallbackCache(60_000, 10, null);
+
+        cache.put(cache.keyOf(new Object[] { "a", new int[] { 1, 2 } }), "first");
+        cache.put(cache.keyOf(new Object[0]), "none");
+
+        Assert.assertEquals(cache.get(cache.keyOf(new Object[] { "a", new int[] { 1, 2 } })).getValue(), "first");
+        Assert.assertEquals(cache.get(cache.keyOf(new Object[0])).getValue(), "none");
+        Assert.assertNull(cache.get(cache.keyOf(new Object[] { "b", new int[] { 1, 2 } })));
+        Assert.assertEquals(cache.getStaleServed(), 2);
+    }
+
+    @Test
+    public void least_recently_used_results_are_evicted() {
+        FallbackCache cache = new FallbackCache(60_000, 2, parameters -> parameters[0]);
+
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        Assert.assertEquals(cache.getSize(), 2);
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(cache.keyOf(new Object[] { "c", "ignored" }), "c");
+    }
+
+    @Test
+    public void expired_results_are_not_served() throws InterruptedException {
+        FallbackCache cache = new FallbackCache(10, 2, null);
+        Object key = cache.keyOf(new Object[] { 1 });
+        cache.put(key, null);
+        Assert.assertNotNull(cache.get(key), "null results are cached too");
+
+        Thread.sleep(30);
+
+        Assert.assertNull(cache.get(key));
+        Assert.assertEquals(cache.getSize(), 0);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.fallback;
+
+import java.lang.reflect.Method;
+
+import org.eclipse.microprofile.faulttolerance.Fallback;
+import org.eclipse.microprofile.faulttolerance.exceptions.FaultToleranceDefinitionException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.fallback.FallbackMethods;
+
+public class FallbackMethodsTest {
+    @Test
+    public void fallback_method_is_called_with_the_parameters() throws Exception {
+        Method method = Service.class.getMethod("greet", String.class, int.class);
+
+        Object result = FallbackMethods.invoke(new Service(), method, method.getAnnotation(Fallback.class), new Object[] { "bob", 2 });
+
+        Assert.assertEquals(result, "fallback bob 2");
+    }
+
+    @Test
+    public void subclasses_of_indexed_classes_reuse_their_handles() throws Exception {
+        FallbackMethods.index(Service.class);
+        Method method = Service.class.getMethod("greet", String.class, int.class);
+
+        Object result = FallbackMethods.invoke(new Service() {}, method, method.getAnnotation(Fallback.class), new Object[] { "alice", 1 });
+
+        Assert.assertEquals(result, "fallback alice 1");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void exceptions_of_the_fallback_method_are_not_wrapped() throws Exception {
+        Method method = Service.class.getMethod("fail");
+
+        FallbackMethods.invoke(new Service(), method, method.getAnnotation(Fallback.class), new Object[0]);
+    }
+
+    @Test(expectedExceptions = FaultToleranceDefinitionException.class)
+    public void indexing_rejects_fallback_methods_with_another_return_type() {
+        FallbackMethods.index(BadReturnType.class);
+    }
+
+    public static class Service {
+        @Fallback(fallbackMethod = "greetFallback")
+        public String greet(String name, int times) {
+            throw new RuntimeException();
+        }
+
+        public String greetFallback(String name, int times) {
+            return "fallback " + name + " " + times;
+        }
+
+        @Fallback(fallbackMethod = "failFallback")
+        public void fail() {
+            throw new RuntimeException();
+        }
+
+        public void failFallback() {
+            throw new IllegalStateException();
+        }
+    }
+
+    public static class BadReturnType {
+        @Fallback(fallbackMethod = "numberFallback")
+        public String number() {
+            return "1";
+        }
+
+        public Integer numberFallback() {
+            return 1;
+        }
+    }
+}
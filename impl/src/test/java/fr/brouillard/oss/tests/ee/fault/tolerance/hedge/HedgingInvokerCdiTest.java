@@ -0,0 +1,189 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.hedge;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Priority;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.spi.Extension;
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InterceptorBinding;
+import javax.interceptor.InvocationContext;
+
+import org.eclipse.microprofile.config.spi.ConfigProviderResolver;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.testng.Arquillian;
+import org.jboss.shrinkwrap.api.Filters;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.Hedge;
+import fr.brouillard.oss.ee.fault.tolerance.cdi.FaultToleranceJEECDIExtension;
+import fr.brouillard.oss.ee.fault.tolerance.hedge.HedgingInvoker;
+import fr.brouillard.oss.ee.fault.tolerance.impl.TimeoutManager;
+import fr.brouillard.oss.ee.microprofile.config.GuardEEConfigProviderResolver;
+
+public class HedgingInvokerCdiTest extends Arquillian {
+    @Deployment
+    public static WebArchive createDeployment() {
+        return ShrinkWrap.create(WebArchive.class)
+                .addClasses(
+                        HedgingInvokerCdiTest.class
+                        , Counted.class
+                        , CountingInterceptor.class
+                        , HedgedBean.class
+                        , InProcessTimeoutManager.class
+                )
+                .addPackages(true, Filters.exclude(TimeoutManager.class), "fr.brouillard.oss.ee.fault.tolerance", "fr.brouillard.oss.ee.microprofile")
+                .addAsServiceProvider(Extension.class, FaultToleranceJEECDIExtension.class)
+                .addAsServiceProvider(ConfigProviderResolver.class, GuardEEConfigProviderResolver.class)
+                .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Inject
+    HedgedBean bean;
+
+    @Inject
+    HedgingInvoker hedging;
+
+    @Test
+    public void hedged_attempt_only_runs_the_remaining_interceptors() throws Exception {
+        Method method = HedgedBean.class.getMethod("slowOnce");
+
+        Assert.assertEquals(bean.slowOnce(), "hedge");
+
+        Assert.assertEquals(hedging.getHedgedAttempts(method), 1);
+        Assert.assertEquals(hedging.getHedgeWins(method), 1);
+        Assert.assertEquals(HedgedBean.invocations.get(), 2, "both attempts reached the bean");
+        Assert.assertEquals(CountingInterceptor.invocations.get(), 1, "the interceptors run before the hedging one are not run again");
+    }
+
+    @Test
+    public void caller_does_not_wait_for_a_non_interruptible_attempt() throws Exception {
+        Method method = HedgedBean.class.getMethod("stuckOnce");
+
+        long start = System.nanoTime();
+        Assert.assertEquals(bean.stuckOnce(), "hedge");
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assert.assertTrue(elapsed < 1000, "the caller waited " + elapsed + "ms for the stuck primary attempt");
+        Assert.assertEquals(hedging.getHedgeWins(method), 1);
+    }
+
+    @Inherited
+    @InterceptorBinding
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.METHOD, ElementType.TYPE})
+    public @interface Counted {
+    }
+
+    @Counted
+    @Interceptor
+    @Priority(Interceptor.Priority.PLATFORM_BEFORE)
+    public static class CountingInterceptor {
+        static final AtomicInteger invocations = new AtomicInteger();
+
+        @AroundInvoke
+        public Object count(InvocationContext context) throws Exception {
+            invocations.incrementAndGet();
+            return context.proceed();
+        }
+    }
+
+    /**
+     * The embedded container provides neither EJBs nor managed concurrency, timeouts are handled in process.
+     */
+    @ApplicationScoped
+    public static class InProcessTimeoutManager extends TimeoutManager {
+        private ExecutorService executor;
+
+        @PostConstruct
+        @Override
+        public void initialize() {
+            executor = Executors.newCachedThreadPool();
+            set("threadFactory", (ManagedThreadFactory) Thread::new);
+            set("executor", Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {ManagedExecutorService.class}
+                    , (proxy, method, args) -> method.invoke(executor, args)));
+            super.initialize();
+        }
+
+        @PreDestroy
+        @Override
+        public void cleanup() {
+            executor.shutdownNow();
+        }
+
+        private void set(String field, Object value) {
+            try {
+                Field f = TimeoutManager.class.getDeclaredField(field);
+                f.setAccessible(true);
+                f.set(this, value);
+            } catch (ReflectiveOperationException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    @ApplicationScoped
+    public static class HedgedBean {
+        static final AtomicInteger invocations = new AtomicInteger();
+        static final AtomicInteger stuckCalls = new AtomicInteger();
+
+        @Counted
+        @Hedge(delay = 50)
+        public String slowOnce() throws InterruptedException {
+            if (invocations.incrementAndGet() == 1) {
+                Thread.sleep(5000l);
+                return "primary";
+            }
+            return "hedge";
+        }
+
+        @Hedge(delay = 50)
+        public String stuckOnce() {
+            if (stuckCalls.incrementAndGet() == 1) {
+                // ignores interruptions, like a blocking socket read
+                long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+                while (System.nanoTime() < end) {
+                    Thread.yield();
+                }
+                return "primary";
+            }
+            return "hedge";
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.hedge;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.hedge.LatencyRecorder;
+
+public class LatencyRecorderTest {
+    @Test
+    public void no_percentile_is_given_before_enough_latencies_are_recorded() {
+        LatencyRecorder recorder = new LatencyRecorder(95);
+        for (int i = 0; i < 31; i++) {
+            recorder.record(i);
+        }
+        Assert.assertEquals(recorder.getPercentileInNanos(), -1);
+    }
+
+    @Test
+    public void percentile_follows_the_latest_latencies() {
+        LatencyRecorder recorder = new LatencyRecorder(90);
+        for (int i = 1; i <= 100; i++) {
+            recorder.record(i);
+        }
+        Assert.assertEquals(recorder.getPercentileInNanos(), 87L, "percentile computed on the 96th sample");
+
+        for (int i = 0; i < 128; i++) {
+            recorder.record(1000);
+        }
+        Assert.assertEquals(recorder.getPercentileInNanos(), 1000L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void percentile_must_be_positive() {
+        new LatencyRecorder(0);
+    }
+}
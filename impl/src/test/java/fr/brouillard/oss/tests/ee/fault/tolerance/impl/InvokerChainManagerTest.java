@@ -0,0 +1,172 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.impl;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.interceptor.InvocationContext;
+
+import org.eclipse.microprofile.faulttolerance.Retry;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.impl.InvokerChain;
+import fr.brouillard.oss.ee.fault.tolerance.impl.InvokerChainManager;
+import fr.brouillard.oss.ee.fault.tolerance.retry.RetryInvoker;
+import fr.brouillard.oss.ee.fault.tolerance.timeout.TimeoutInvoker;
+
+public class InvokerChainManagerTest {
+    private InvokerChainManager manager;
+    private List<String> calls;
+
+    @BeforeMethod
+    public void createManager() throws ReflectiveOperationException {
+        calls = Collections.synchronizedList(new ArrayList<>());
+        manager = new InvokerChainManager();
+        manager.initialize();
+        inject("timeoutInvoker", new TimeoutInvoker() {
+            @Override
+            public Object invoke(InvocationContext context, InvokerChain chain) throws Exception {
+                calls.add("timeout");
+                return chain.invoke(context);
+            }
+        });
+        inject("retryInvoker", new RetryInvoker(null) {
+            @Override
+            public Object invoke(InvocationContext context, InvokerChain chain) throws Exception {
+                calls.add("retry");
+                return chain.invoke(context);
+            }
+        });
+    }
+
+    private void inject(String field, Object invoker) throws ReflectiveOperationException {
+        Field f = InvokerChainManager.class.getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(manager, invoker);
+    }
+
+    @Test
+    public void chain_is_built_once_per_method() throws Exception {
+        Service service = new Service();
+        Method method = Service.class.getMethod("retried");
+
+        InvokerChain chain = manager.forContext(new Context(service, method));
+
+        Assert.assertSame(manager.forContext(new Context(service, method)), chain);
+        Assert.assertSame(manager.forContext(new Context(new Service(), method)), chain, "instances of a class share the chains");
+    }
+
+    @Test
+    public void methods_with_different_annotations_get_their_own_chain() throws Exception {
+        Service service = new Service();
+        Map<String, InvokerChain> chains = new HashMap<>();
+        for (String name : Arrays.asList("plain", "timed", "retried", "retriedAndTimed")) {
+            chains.put(name, manager.forContext(new Context(service, Service.class.getMethod(name))));
+        }
+        Assert.assertEquals(chains.values().stream().distinct().count(), 4);
+
+        Assert.assertEquals(invoke(chains.get("plain"), service, "plain"), Collections.singletonList("proceed"));
+        Assert.assertEquals(invoke(chains.get("timed"), service, "timed"), Arrays.asList("timeout", "proceed"));
+        Assert.assertEquals(invoke(chains.get("retried"), service, "retried"), Arrays.asList("retry", "proceed"));
+        Assert.assertEquals(invoke(chains.get("retriedAndTimed"), service, "retriedAndTimed"), Arrays.asList("retry", "timeout", "proceed"));
+    }
+
+    private List<String> invoke(InvokerChain chain, Service service, String name) throws Exception {
+        calls.clear();
+        chain.invoke(new Context(service, Service.class.getMethod(name)));
+        return new ArrayList<>(calls);
+    }
+
+    public static class Service {
+        public void plain() {
+        }
+
+        @Timeout
+        public void timed() {
+        }
+
+        @Retry
+        public void retried() {
+        }
+
+        @Retry
+        @Timeout
+        public void retriedAndTimed() {
+        }
+    }
+
+    private class Context implements InvocationContext {
+        private final Object target;
+        private final Method method;
+        private final Map<String, Object> contextData = new HashMap<>();
+
+        Context(Object target, Method method) {
+            this.target = target;
+            this.method = method;
+        }
+
+        @Override
+        public Object getTarget() {
+            return target;
+        }
+
+        @Override
+        public Object getTimer() {
+            return null;
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Constructor<?> getConstructor() {
+            return null;
+        }
+
+        @Override
+        public Object[] getParameters() {
+            return new Object[0];
+        }
+
+        @Override
+        public void setParameters(Object[] params) {
+        }
+
+        @Override
+        public Map<String, Object> getContextData() {
+            return contextData;
+        }
+
+        @Override
+        public Object proceed() throws Exception {
+            calls.add("proceed");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.impl.TimeoutWheel;
+
+public class TimeoutWheelTest {
+    private TimeoutWheel wheel;
+
+    @BeforeMethod
+    public void startWheel() {
+        wheel = new TimeoutWheel(5, TimeUnit.MILLISECONDS, 8);
+        new Thread(wheel, "timeout-wheel-test").start();
+    }
+
+    @AfterMethod
+    public void stopWheel() {
+        wheel.stop();
+    }
+
+    @Test
+    public void entry_expires_after_delay() throws InterruptedException {
+        LatchEntry entry = new LatchEntry();
+        long start = System.nanoTime();
+        wheel.schedule(entry, 50, TimeUnit.MILLISECONDS);
+
+        Assert.assertTrue(entry.expired.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertTrue(entry.isExpired());
+        Assert.assertFalse(entry.cancel());
+    }
+
+    @Test
+    public void entry_spanning_several_rounds_expires() throws InterruptedException {
+        LatchEntry entry = new LatchEntry();
+        // 8 ticks of 5ms per round
+        wheel.schedule(entry, 120, TimeUnit.MILLISECONDS);
+
+        Assert.assertFalse(entry.expired.await(60, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(entry.expired.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelled_entry_never_expires() throws InterruptedException {
+        LatchEntry entry = new LatchEntry();
+        wheel.schedule(entry, 20, TimeUnit.MILLISECONDS);
+
+        Assert.assertTrue(entry.cancel());
+        Assert.assertFalse(entry.expired.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(entry.isCancelled());
+    }
+
+    private static class LatchEntry extends TimeoutWheel.Entry {
+        private final CountDownLatch expired = new CountDownLatch(1);
+
+        @Override
+        protected void expire() {
+            expired.countDown();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.misc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.misc.DelegateFuture;
+
+public class DelegateFutureTest {
+    @Test
+    public void outcome_of_observable_call_is_exposed() throws Exception {
+        CompletableFuture<Future<String>> completion = new CompletableFuture<>();
+        DelegateFuture<String> future = new DelegateFuture<>(completion);
+
+        CompletableFuture<Object> outcome = future.toCompletableFuture().get();
+        Assert.assertFalse(outcome.isDone());
+
+        completion.complete(CompletableFuture.completedFuture("done"));
+        Assert.assertEquals(outcome.get(), "done");
+        Assert.assertEquals(future.get(), "done");
+    }
+
+    @Test
+    public void failure_of_observable_call_is_unwrapped() {
+        CompletableFuture<Future<String>> completion = new CompletableFuture<>();
+        DelegateFuture<String> future = new DelegateFuture<>(completion);
+        IllegalStateException failure = new IllegalStateException();
+
+        completion.completeExceptionally(failure);
+        Assert.assertSame(future.toCompletableFuture().get().handle((r, t) -> t).join(), failure);
+    }
+
+    @Test
+    public void task_is_cancelled_with_the_future() {
+        FutureTask<Object> task = new FutureTask<>(() -> null);
+        DelegateFuture<String> future = new DelegateFuture<>(new CompletableFuture<>(), task);
+
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertTrue(task.isCancelled());
+        Assert.assertTrue(future.isCancelled());
+    }
+}
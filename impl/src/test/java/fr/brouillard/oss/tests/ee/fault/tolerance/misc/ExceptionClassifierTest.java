@@ -0,0 +1,48 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.misc;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.misc.ExceptionClassifier;
+
+public class ExceptionClassifierTest {
+    @Test
+    @SuppressWarnings("unchecked")
+    public void subclasses_of_the_types_are_matched() {
+        ExceptionClassifier classifier = new ExceptionClassifier(new Class[] { IOException.class, IllegalStateException.class });
+
+        Assert.assertTrue(classifier.matches(new IOException()));
+        Assert.assertTrue(classifier.matches(new FileNotFoundException()));
+        Assert.assertTrue(classifier.matches(new IllegalStateException()));
+        Assert.assertFalse(classifier.matches(new IllegalArgumentException()));
+        Assert.assertFalse(classifier.matches(null));
+        // verdicts are cached, asking again gives the same answer
+        Assert.assertTrue(classifier.matches(new FileNotFoundException()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void nothing_is_matched_without_types() {
+        ExceptionClassifier classifier = new ExceptionClassifier(new Class[0]);
+
+        Assert.assertFalse(classifier.matches(new RuntimeException()));
+    }
+}
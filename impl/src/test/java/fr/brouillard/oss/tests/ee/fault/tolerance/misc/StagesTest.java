@@ -0,0 +1,66 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.misc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.misc.Stages;
+
+public class StagesTest {
+    @Test
+    public void only_stage_returning_methods_are_stages() throws Exception {
+        Assert.assertTrue(Stages.isStage(Service.class.getMethod("stage")));
+        Assert.assertTrue(Stages.isStage(Service.class.getMethod("completable")));
+        Assert.assertFalse(Stages.isStage(Service.class.getMethod("future")));
+        Assert.assertFalse(Stages.isStage(Service.class.getMethod("value")));
+    }
+
+    @Test
+    public void invoke_turns_thrown_failures_into_failed_stages() {
+        IllegalStateException failure = new IllegalStateException();
+
+        CompletableFuture<Object> result = Stages.invoke(context -> { throw failure; }, null);
+
+        Assert.assertTrue(result.isCompletedExceptionally());
+        Assert.assertSame(result.handle((r, t) -> t).join(), failure);
+    }
+
+    @Test
+    public void invoke_unwraps_stage_failures() {
+        IllegalStateException failure = new IllegalStateException();
+        CompletableFuture<Object> stage = new CompletableFuture<>();
+
+        CompletableFuture<Object> result = Stages.invoke(context -> stage, null);
+        Assert.assertFalse(result.isDone());
+
+        stage.completeExceptionally(new CompletionException(failure));
+        Assert.assertSame(result.handle((r, t) -> t).join(), failure);
+        Assert.assertTrue(result.isCompletedExceptionally());
+    }
+
+    public interface Service {
+        CompletionStage<String> stage();
+        CompletableFuture<String> completable();
+        Future<String> future();
+        String value();
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.misc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.TimeoutBudget;
+import fr.brouillard.oss.ee.fault.tolerance.misc.CallContext;
+
+public class TimeoutBudgetTest {
+    @Test
+    public void no_budget_outside_guarded_calls() {
+        Assert.assertFalse(TimeoutBudget.isGuarded());
+        Assert.assertEquals(TimeoutBudget.remaining(TimeUnit.MILLISECONDS), Long.MAX_VALUE);
+        Assert.assertFalse(TimeoutBudget.isExhausted());
+    }
+
+    @Test
+    public void nested_calls_use_the_earliest_deadline() {
+        long now = System.nanoTime();
+        CallContext outerCall = new CallContext(Thread.currentThread(), now + TimeUnit.MILLISECONDS.toNanos(500), false);
+        CallContext innerCall = new CallContext(Thread.currentThread(), now + TimeUnit.SECONDS.toNanos(10), false);
+
+        CallContext previous = outerCall.publish();
+        try {
+            CallContext outer = innerCall.publish();
+            try {
+                Assert.assertTrue(TimeoutBudget.isGuarded());
+                Assert.assertTrue(TimeoutBudget.remaining(TimeUnit.MILLISECONDS) <= 500);
+            } finally {
+                CallContext.restore(outer);
+            }
+            Assert.assertSame(CallContext.current(), outerCall);
+        } finally {
+            CallContext.restore(previous);
+        }
+        Assert.assertNull(CallContext.current());
+    }
+
+    @Test
+    public void passed_deadline_exhausts_the_budget() {
+        CallContext call = new CallContext(Thread.currentThread(), System.nanoTime(), false);
+        call.publish();
+        try {
+            Assert.assertTrue(TimeoutBudget.isExhausted());
+        } finally {
+            CallContext.restore(null);
+        }
+    }
+}
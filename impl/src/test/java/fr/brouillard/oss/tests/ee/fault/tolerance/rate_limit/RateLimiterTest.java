@@ -0,0 +1,61 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.rate_limit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.rate_limit.RateLimiter;
+
+public class RateLimiterTest {
+    @Test
+    public void bursts_up_to_the_rate_are_admitted_then_calls_fail_fast() {
+        RateLimiter limiter = new RateLimiter(5, TimeUnit.SECONDS.toNanos(10), 0);
+
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(limiter.reserve(), 0, "call " + i + " is part of the burst");
+        }
+        Assert.assertEquals(limiter.reserve(), -1);
+        Assert.assertEquals(limiter.getRejections(), 1);
+    }
+
+    @Test
+    public void calls_wait_for_their_turn_within_the_max_wait() {
+        long interval = TimeUnit.MILLISECONDS.toNanos(100);
+        RateLimiter limiter = new RateLimiter(1, interval, 2 * interval);
+
+        Assert.assertEquals(limiter.reserve(), 0);
+        long firstWait = limiter.reserve();
+        long secondWait = limiter.reserve();
+        Assert.assertTrue(firstWait > 0 && firstWait <= interval, "first wait: " + firstWait);
+        Assert.assertTrue(secondWait > interval && secondWait <= 2 * interval, "second wait: " + secondWait);
+        Assert.assertEquals(limiter.reserve(), -1, "third call would wait beyond the max wait");
+    }
+
+    @Test
+    public void permits_come_back_with_time() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(2, TimeUnit.MILLISECONDS.toNanos(40), 0);
+        Assert.assertTrue(limiter.acquire());
+        Assert.assertTrue(limiter.acquire());
+        Assert.assertFalse(limiter.acquire());
+
+        Thread.sleep(30);
+
+        Assert.assertTrue(limiter.acquire());
+    }
+}
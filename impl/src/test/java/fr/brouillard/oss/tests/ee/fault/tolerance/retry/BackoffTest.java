@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.retry;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.retry.Backoff;
+
+public class BackoffTest {
+    @Test
+    public void fixed_backoff_adds_bounded_jitter() {
+        Backoff backoff = new Backoff(Backoff.Strategy.FIXED, 100, Long.MAX_VALUE, 20, Backoff.DEFAULT_FACTOR);
+
+        for (int retry = 1; retry < 50; retry++) {
+            long delay = backoff.nextDelayInMillis(retry, 0);
+            Assert.assertTrue(delay >= 100 && delay < 120, "unexpected delay " + delay);
+        }
+    }
+
+    @Test
+    public void exponential_backoff_grows_up_to_the_cap() {
+        Backoff backoff = new Backoff(Backoff.Strategy.parse("exponential"), 100, 1000, 0, 2);
+
+        Assert.assertEquals(backoff.nextDelayInMillis(1, 0), 100);
+        Assert.assertEquals(backoff.nextDelayInMillis(2, 100), 200);
+        Assert.assertEquals(backoff.nextDelayInMillis(3, 200), 400);
+        Assert.assertEquals(backoff.nextDelayInMillis(5, 800), 1000);
+        Assert.assertEquals(backoff.nextDelayInMillis(500, 1000), 1000);
+    }
+
+    @Test
+    public void full_jitter_stays_below_exponential_delay() {
+        Backoff backoff = new Backoff(Backoff.Strategy.parse("full-jitter"), 100, 1000, 0, 2);
+
+        for (int i = 0; i < 50; i++) {
+            long delay = backoff.nextDelayInMillis(3, 0);
+            Assert.assertTrue(delay >= 0 && delay <= 400, "unexpected delay " + delay);
+        }
+    }
+
+    @Test
+    public void decorrelated_jitter_is_bounded_by_previous_delay_and_cap() {
+        Backoff backoff = new Backoff(Backoff.Strategy.parse("decorrelated-jitter"), 100, 1000, 0, 2);
+
+        long previous = 0;
+        for (int retry = 1; retry < 50; retry++) {
+            long delay = backoff.nextDelayInMillis(retry, previous);
+            long upper = (retry == 1) ? 300 : Math.min(1000, Math.max(100, previous) * 3);
+            Assert.assertTrue(delay >= 100 && delay <= upper, "unexpected delay " + delay + " after " + previous);
+            previous = delay;
+        }
+    }
+}
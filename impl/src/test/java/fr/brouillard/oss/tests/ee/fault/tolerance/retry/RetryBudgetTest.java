@@ -0,0 +1,51 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.retry;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.retry.RetryBudget;
+
+public class RetryBudgetTest {
+    @Test
+    public void retries_are_denied_once_the_budget_is_spent() {
+        RetryBudget budget = new RetryBudget(0.1, 2);
+
+        Assert.assertTrue(budget.tryRetry());
+        Assert.assertTrue(budget.tryRetry());
+        Assert.assertFalse(budget.tryRetry());
+        Assert.assertEquals(budget.getSpent(), 2);
+        Assert.assertEquals(budget.getDenials(), 1);
+    }
+
+    @Test
+    public void successes_refill_the_budget_up_to_its_capacity() {
+        RetryBudget budget = new RetryBudget(0.5, 2);
+        budget.tryRetry();
+        budget.tryRetry();
+
+        budget.onSuccess();
+        Assert.assertFalse(budget.tryRetry());
+        budget.onSuccess();
+        Assert.assertTrue(budget.tryRetry());
+
+        for (int i = 0; i < 10; i++) {
+            budget.onSuccess();
+        }
+        Assert.assertEquals(budget.getLevel(), 2.0);
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright © 2017 Matthieu Brouillard [http://oss.brouillard.fr/GuardEE] (matthieu@brouillard.fr)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fr.brouillard.oss.tests.ee.fault.tolerance.single_flight;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.interceptor.InvocationContext;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import fr.brouillard.oss.ee.fault.tolerance.impl.InvokerChain;
+import fr.brouillard.oss.ee.fault.tolerance.single_flight.SingleFlightInvoker;
+
+public class SingleFlightInvokerTest {
+    @Test
+    public void identical_concurrent_calls_share_one_execution() throws Exception {
+        SingleFlightInvoker invoker = new SingleFlightInvoker();
+        invoker.initialize();
+        Method method = Service.class.getMethod("read", String.class);
+
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InvokerChain chain = ic -> {
+            executions.incrementAndGet();
+            started.countDown();
+            release.await();
+            return "value of " + ic.getParameters()[0];
+        };
+
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> call(invoker, method, chain, "a"));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Object> second = CompletableFuture.supplyAsync(() -> call(invoker, method, chain, "a"));
+        while (invoker.getCoalescedCalls(method) == 0) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        Assert.assertEquals(first.get(5, TimeUnit.SECONDS), "value of a");
+        Assert.assertEquals(second.get(5, TimeUnit.SECONDS), "value of a");
+        Assert.assertEquals(executions.get(), 1);
+
+        // the call is not in flight anymore, a new one is executed
+        Assert.assertEquals(call(invoker, method, chain, "a"), "value of a");
+        Assert.assertEquals(executions.get(), 2);
+    }
+
+    @Test
+    public void calls_with_other_parameters_are_not_coalesced() throws Exception {
+        SingleFlightInvoker invoker = new SingleFlightInvoker();
+        invoker.initialize();
+        Method method = Service.class.getMethod("readLater", String.class);
+
+        CompletableFuture<Object> pending = new CompletableFuture<>();
+        InvokerChain chain = ic -> pending.thenApply(r -> r + " " + ic.getParameters()[0]);
+
+        CompletableFuture<?> a = (CompletableFuture<?>) call(invoker, method, chain, "a");
+        CompletableFuture<?> sameAsA = (CompletableFuture<?>) call(invoker, method, chain, "a");
+        CompletableFuture<?> b = (CompletableFuture<?>) call(invoker, method, chain, "b");
+        sameAsA.cancel(false);
+        pending.complete("value of");
+
+        Assert.assertEquals(a.get(5, TimeUnit.SECONDS), "value of a");
+        Assert.assertEquals(b.get(5, TimeUnit.SECONDS), "value of b");
+        Assert.assertEquals(invoker.getCoalescedCalls(method), 1);
+    }
+
+    private static Object call(SingleFlightInvoker invoker, Method method, InvokerChain chain, String parameter) {
+        try {
+            return invoker.invoke(new Context(method, parameter), chain);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class Service {
+        public String read(String key) {
+            return key;
+        }
+
+        public CompletableFuture<String> readLater(String key) {
+            return CompletableFuture.completedFuture(key);
+        }
+    }
+
+    private static class Context implements InvocationContext {
+        private final Method method;
+        private Object[] parameters;
+        private final Map<String, Object> contextData = new HashMap<>();
+
+        Context(Method method, Object... parameters) {
+            this.method = method;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public Object getTarget() {
+            return null;
+        }
+
+        @Override
+        public Object getTimer() {
+            return null;
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Constructor<?> getConstructor() {
+            return null;
+        }
+
+        @Override
+        public Object[] getParameters() {
+            return parameters;
+        }
+
+        @Override
+        public void setParameters(Object[] params) {
+            this.parameters = params;
+        }
+
+        @Override
+        public Map<String, Object> getContextData() {
+            return contextData;
+        }
+
+        @Override
+        public Object proceed() throws Exception {
+            throw new UnsupportedOperationException();
+        }
+    }
+}